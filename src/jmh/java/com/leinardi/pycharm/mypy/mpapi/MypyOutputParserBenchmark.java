@@ -0,0 +1,112 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.mpapi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compares the byte scanner parsing the Mypy text output with the regex based parser it replaced, on the output of a
+ * full project scan.
+ * <p>
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MypyOutputParserBenchmark {
+    private static final String TYPE_RE = " (error|warning|note):";
+    private static final String ISSUE_RE = "([^\\s:]+):(\\d+:)?(\\d+:)?" + TYPE_RE + ".*";
+
+    @Param({"50000"})
+    private int lines;
+
+    private byte[] output;
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            builder.append("src/package").append(i % 20).append("/module").append(i % 400).append(".py:")
+                    .append(i % 3000 + 1).append(':').append(i % 80 + 1);
+            if (i % 5 == 0) {
+                builder.append(": note: See https://mypy.readthedocs.io/en/stable/running_mypy.html\n");
+            } else {
+                builder.append(": error: Argument 1 to \"function\" has incompatible type \"str\"; expected \"int\"")
+                        .append("  [arg-type]\n");
+            }
+        }
+        builder.append("Found ").append(lines).append(" errors in 400 files (checked 400 source files)\n");
+        output = builder.toString().getBytes(UTF_8);
+    }
+
+    @Benchmark
+    public List<Issue> scanner() throws IOException {
+        return MypyTextOutputParser.parse(new ByteArrayInputStream(output));
+    }
+
+    @Benchmark
+    public List<Issue> regex() throws IOException {
+        return parseWithRegex(new ByteArrayInputStream(output));
+    }
+
+    /**
+     * The former implementation of {@code MypyRunner.parseMypyOutput}.
+     */
+    private static List<Issue> parseWithRegex(InputStream inputStream) throws IOException {
+        ArrayList<Issue> issues = new ArrayList<>();
+        BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream, UTF_8));
+        String rawLine;
+        Pattern typePattern = Pattern.compile(TYPE_RE);
+        while ((rawLine = bufferedReader.readLine()) != null) {
+            if (rawLine.matches(ISSUE_RE)) {
+                Matcher matcher = typePattern.matcher(rawLine);
+                if (matcher.find()) {
+                    int typeIndexStart = matcher.start();
+                    String[] splitPosition = rawLine.substring(0, typeIndexStart - 1).split(":", -1);
+                    String path = splitPosition[0].trim();
+                    int line = splitPosition.length > 1 ? Integer.parseInt(splitPosition[1].trim()) : 1;
+                    int column = splitPosition.length > 2 ? Integer.parseInt(splitPosition[2].trim()) - 1 : 1;
+                    String[] splitError = rawLine.substring(typeIndexStart).split(":", 2);
+                    SeverityLevel severityLevel = SeverityLevel.valueOf(splitError[0].trim().toUpperCase());
+                    String message = splitError[1].trim();
+                    issues.add(new Issue(path, line, column, severityLevel, message));
+                }
+            }
+        }
+        return issues;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compares the bulk encoder writing the temporary copies of the files to check with the character by character
+ * {@link Writer} it replaced, on small and large files, with and without line separator translation.
+ * <p>
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContentWriterBenchmark {
+    @Param({"50", "20000"})
+    private int lines;
+
+    @Param({"\n", "\r\n"})
+    private String lineSeparator;
+
+    private String content;
+    private Path directory;
+    private Path file;
+    private Path unchangedFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            builder.append("def function_").append(i).append("(argument: int) -> str:  # type: ignore[misc]\n");
+        }
+        content = builder.toString();
+        directory = Files.createTempDirectory("mypy-benchmark");
+        file = directory.resolve("module.py");
+        unchangedFile = directory.resolve("unchanged.py");
+        ContentWriter.writeIfChanged(unchangedFile, ContentWriter.encode(content, lineSeparator, UTF_8));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(unchangedFile);
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void writer() throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file.toFile()),
+                UTF_8.newEncoder()))) {
+            for (final char character : content.toCharArray()) {
+                if (character == '\n') {
+                    writer.write(lineSeparator);
+                } else {
+                    writer.write(character);
+                }
+            }
+        }
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public void bulk() throws IOException {
+        ContentWriter.writeIfChanged(file, ContentWriter.encode(content, lineSeparator, UTF_8));
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public boolean bulkUnchanged() throws IOException {
+        return ContentWriter.writeIfChanged(unchangedFile, ContentWriter.encode(content, lineSeparator, UTF_8));
+    }
+}
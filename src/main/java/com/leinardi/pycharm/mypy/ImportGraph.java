@@ -0,0 +1,139 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The modules imported by each file of a project, and their reverse: the files importing each module.
+ * <p>
+ * Files and modules are identified by their path and qualified name. Not thread safe.
+ */
+final class ImportGraph {
+    private final Map<String, String> moduleByFile = new HashMap<>();
+    private final Map<String, Set<String>> importsByFile = new HashMap<>();
+    private final Map<String, Set<String>> importersByModule = new HashMap<>();
+
+    /**
+     * Set the module name and the imports of a file, replacing the previous ones.
+     *
+     * @param file            the path of the file.
+     * @param module          the qualified name of the file, or null if it can't be imported.
+     * @param importedModules the qualified names of the modules imported by the file.
+     */
+    void put(@NotNull final String file,
+             @Nullable final String module,
+             @NotNull final Collection<String> importedModules) {
+        remove(file);
+        if (module != null) {
+            moduleByFile.put(file, module);
+        }
+        Set<String> imports = new HashSet<>(importedModules);
+        importsByFile.put(file, imports);
+        for (String importedModule : imports) {
+            importersByModule.computeIfAbsent(importedModule, key -> new HashSet<>()).add(file);
+        }
+    }
+
+    void remove(@NotNull final String file) {
+        moduleByFile.remove(file);
+        Set<String> imports = importsByFile.remove(file);
+        if (imports == null) {
+            return;
+        }
+        for (String importedModule : imports) {
+            Set<String> importers = importersByModule.get(importedModule);
+            if (importers != null && importers.remove(file) && importers.isEmpty()) {
+                importersByModule.remove(importedModule);
+            }
+        }
+    }
+
+    /**
+     * Get the files importing, directly or not, some files.
+     *
+     * @param files    the paths of the files.
+     * @param maxFiles the maximum number of dependents to return.
+     * @return the paths of the dependents, the direct ones first, not including the given files.
+     */
+    @NotNull
+    Set<String> getDependents(@NotNull final Collection<String> files, final int maxFiles) {
+        Set<String> dependents = new LinkedHashSet<>();
+        Set<String> visited = new HashSet<>(files);
+        Deque<String> queue = new ArrayDeque<>(files);
+        while (!queue.isEmpty() && dependents.size() < maxFiles) {
+            String module = moduleByFile.get(queue.poll());
+            for (String importer : importersByModule.getOrDefault(module, Collections.emptySet())) {
+                if (visited.add(importer)) {
+                    dependents.add(importer);
+                    queue.add(importer);
+                    if (dependents.size() == maxFiles) {
+                        break;
+                    }
+                }
+            }
+        }
+        return dependents;
+    }
+
+    /**
+     * Resolve the source of a relative import, e.g. {@code from ..models import base}.
+     *
+     * @param module    the qualified name of the importing file.
+     * @param isPackage true if the importing file is the {@code __init__} of its package.
+     * @param level     the number of leading dots of the import.
+     * @param name      the name following the dots, or null if none.
+     * @return the qualified name of the imported module, or null if the import goes above the top level package.
+     */
+    @Nullable
+    static String resolveRelativeImport(@NotNull final String module,
+                                        final boolean isPackage,
+                                        final int level,
+                                        @Nullable final String name) {
+        String base = isPackage ? module : parentOf(module);
+        for (int i = 1; i < level && base != null; i++) {
+            base = parentOf(base);
+        }
+        if (base == null || base.isEmpty()) {
+            return null;
+        }
+        return name == null || name.isEmpty() ? base : base + '.' + name;
+    }
+
+    /**
+     * @return the parent package of a module, empty for a top level module and null above the top level.
+     */
+    @Nullable
+    private static String parentOf(final String module) {
+        if (module.isEmpty()) {
+            return null;
+        }
+        int index = module.lastIndexOf('.');
+        return index < 0 ? "" : module.substring(0, index);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy;
+
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.leinardi.pycharm.mypy.util.FileTypes;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+
+/**
+ * Forwards the Python files edited in the editors, before they are saved, to the {@link MypyIncrementalScanner} of
+ * their project, when incremental scans are enabled. The unsaved content is checked through a shadow copy of the
+ * file.
+ */
+public class IncrementalScanDocumentListener implements DocumentListener {
+
+    @Override
+    public void documentChanged(@NotNull final DocumentEvent event) {
+        VirtualFile file = FileDocumentManager.getInstance().getFile(event.getDocument());
+        if (file == null || !file.isInLocalFileSystem() || !FileTypes.isPython(file.getFileType())) {
+            return;
+        }
+        for (Project project : ProjectManager.getInstance().getOpenProjects()) {
+            if (project.isDisposed()) {
+                continue;
+            }
+            MypyConfigService mypyConfigService = MypyConfigService.getInstance(project);
+            if (mypyConfigService != null && mypyConfigService.isIncrementalScans()
+                    && ProjectFileIndex.getInstance(project).isInContent(file)) {
+                MypyIncrementalScanner.getInstance(project).filesChanged(Collections.singletonList(file));
+            }
+        }
+    }
+}
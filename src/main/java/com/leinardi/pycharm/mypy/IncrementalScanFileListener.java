@@ -0,0 +1,58 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.leinardi.pycharm.mypy.util.FileTypes;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Forwards the Python files changed on disk to the {@link MypyIncrementalScanner}, when incremental scans are enabled.
+ */
+public class IncrementalScanFileListener implements BulkFileListener {
+    private final Project project;
+
+    public IncrementalScanFileListener(@NotNull final Project project) {
+        this.project = project;
+    }
+
+    @Override
+    public void after(@NotNull final List<? extends VFileEvent> events) {
+        MypyConfigService mypyConfigService = MypyConfigService.getInstance(project);
+        if (project.isDisposed() || mypyConfigService == null || !mypyConfigService.isIncrementalScans()) {
+            return;
+        }
+        List<VirtualFile> changedFiles = new ArrayList<>();
+        for (VFileEvent event : events) {
+            VirtualFile file = event.getFile();
+            if (!(event instanceof VFileDeleteEvent) && file != null && !file.isDirectory()
+                    && FileTypes.isPython(file.getFileType())) {
+                changedFiles.add(file);
+            }
+        }
+        if (!changedFiles.isEmpty()) {
+            MypyIncrementalScanner.getInstance(project).filesChanged(changedFiles);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy;
+
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.TimeoutUtil;
+import com.leinardi.pycharm.mypy.checker.Problem;
+import com.leinardi.pycharm.mypy.checker.ScanFiles;
+import com.leinardi.pycharm.mypy.checker.ScanPriority;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Groups the annotator requests arriving within a short window (e.g. all the editors re-highlighted after a branch
+ * switch) into a single Mypy run, and splits its results per file.
+ * <p>
+ * The first request of a batch waits for the window to elapse and then runs the scan on behalf of all the requests
+ * collected meanwhile.
+ */
+@Service
+public final class MypyAnnotationBatcher {
+    private static final Logger LOG = Logger.getInstance(MypyAnnotationBatcher.class);
+    private static final long BATCH_WINDOW_MILLIS = 50;
+    private static final long POLL_INTERVAL_MILLIS = 20;
+
+    private final Project project;
+    @Nullable
+    private Batch openBatch;
+
+    public MypyAnnotationBatcher(@NotNull final Project project) {
+        this.project = project;
+    }
+
+    public static MypyAnnotationBatcher getInstance(@NotNull final Project project) {
+        return project.getService(MypyAnnotationBatcher.class);
+    }
+
+    /**
+     * Check a file as part of the next batch.
+     *
+     * @param psiFile the file to check.
+     * @param request the annotator request of the file.
+     * @return the problems found in the file, or null if the scan did not complete or the request was superseded.
+     */
+    @Nullable
+    public List<Problem> scan(@NotNull final PsiFile psiFile, @NotNull final MypyAnnotationScheduler.Request request) {
+        final Batch batch;
+        final boolean leader;
+        final Entry entry = new Entry(psiFile, request);
+        synchronized (this) {
+            leader = openBatch == null;
+            if (leader) {
+                openBatch = new Batch();
+            }
+            batch = openBatch;
+            batch.entries.add(entry);
+        }
+        if (leader) {
+            // when cancelled, the batch is still run right away, as the other requests rely on this thread to run it
+            if (!awaitBatchWindow()) {
+                batch.drop(entry);
+            }
+            synchronized (this) {
+                openBatch = null;
+            }
+            batch.run();
+        }
+        return entry.await(batch);
+    }
+
+    /**
+     * @return false if the annotator of the leader has been cancelled before the end of the window.
+     */
+    private static boolean awaitBatchWindow() {
+        long deadline = System.currentTimeMillis() + BATCH_WINDOW_MILLIS;
+        while (true) {
+            try {
+                ProgressManager.checkCanceled();
+            } catch (ProcessCanceledException e) {
+                // rethrown by the wait for the results of the batch
+                return false;
+            }
+            long remainingMillis = deadline - System.currentTimeMillis();
+            if (remainingMillis <= 0) {
+                return true;
+            }
+            TimeoutUtil.sleep(Math.min(remainingMillis, POLL_INTERVAL_MILLIS));
+        }
+    }
+
+    private final class Batch {
+        private final List<Entry> entries = new ArrayList<>();
+        private int activeEntries;
+        @Nullable
+        private ScanFiles scanFiles;
+        @Nullable
+        private Future<Map<PsiFile, List<Problem>>> scanFuture;
+
+        private void run() {
+            Set<VirtualFile> virtualFiles = new LinkedHashSet<>();
+            for (Entry entry : entries) {
+                VirtualFile virtualFile = entry.psiFile.getVirtualFile();
+                if (virtualFile == null) {
+                    // not a physical file, nothing Mypy could check
+                    entry.result.complete(null);
+                } else if (!entry.request.isSuperseded() && !entry.result.isDone()) {
+                    virtualFiles.add(virtualFile);
+                }
+            }
+            MypyPlugin plugin = project.getService(MypyPlugin.class);
+            ScanFiles batchScan = new ScanFiles(plugin, new ArrayList<>(virtualFiles));
+            // started outside of the lock of the batch: a request takes the lock of its scheduler slot, whose
+            // cancellation of the request in flight calls drop()
+            List<Entry> startedEntries = new ArrayList<>();
+            for (Entry entry : entries) {
+                if (!entry.result.isDone() && entry.request.start(() -> drop(entry))) {
+                    startedEntries.add(entry);
+                } else {
+                    entry.result.complete(null);
+                }
+            }
+            synchronized (this) {
+                scanFiles = batchScan;
+                for (Entry entry : startedEntries) {
+                    // not counted if dropped meanwhile
+                    if (!entry.result.isDone()) {
+                        activeEntries++;
+                    }
+                }
+                if (activeEntries == 0) {
+                    return;
+                }
+            }
+            if (entries.size() > 1) {
+                LOG.debug("Mypy batch scan of " + activeEntries + " files");
+            }
+            Map<PsiFile, List<Problem>> map = Collections.emptyMap();
+            try {
+                Future<Map<PsiFile, List<Problem>>> future = plugin.submitScan(batchScan, priorityOf(virtualFiles));
+                synchronized (this) {
+                    scanFuture = future;
+                }
+                map = awaitScan(future, entries.get(0));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (CancellationException e) {
+                LOG.debug("Mypy batch scan cancelled before running");
+            } catch (ExecutionException e) {
+                LOG.warn("Mypy batch scan failed", e);
+            } finally {
+                for (Entry entry : entries) {
+                    if (batchScan.isTimedOut()) {
+                        entry.request.markPartial();
+                    }
+                    entry.result.complete(batchScan.isCompleted()
+                            ? map.getOrDefault(entry.psiFile, new ArrayList<>())
+                            : null);
+                }
+            }
+        }
+
+        private ScanPriority priorityOf(final Set<VirtualFile> virtualFiles) {
+            VirtualFile[] selectedFiles = FileEditorManager.getInstance(project).getSelectedFiles();
+            return selectedFiles.length > 0 && virtualFiles.contains(selectedFiles[0])
+                    ? ScanPriority.ACTIVE_EDITOR : ScanPriority.VISIBLE_EDITOR;
+        }
+
+        /**
+         * Wait for the scan, dropping the file of the leader from the batch if its annotator is cancelled meanwhile.
+         */
+        private Map<PsiFile, List<Problem>> awaitScan(final Future<Map<PsiFile, List<Problem>>> future,
+                                                      final Entry leaderEntry)
+                throws InterruptedException, ExecutionException {
+            while (!leaderEntry.result.isDone()) {
+                try {
+                    ProgressManager.checkCanceled();
+                    return future.get(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (ProcessCanceledException e) {
+                    // not rethrown: the other requests of the batch may still want the results
+                    drop(leaderEntry);
+                } catch (TimeoutException e) {
+                    // keep waiting
+                }
+            }
+            return future.get();
+        }
+
+        /**
+         * Drop a superseded or cancelled file from the batch, and cancel the scan once none of its files is still
+         * wanted, stopping its Mypy processes.
+         */
+        @SuppressWarnings("FutureReturnValueIgnored")
+        private synchronized void drop(final Entry entry) {
+            if (!entry.result.complete(null) || scanFiles == null) {
+                // already dropped, or dropped before the batch started: then not counted as an active entry
+                return;
+            }
+            activeEntries--;
+            if (activeEntries == 0 && scanFuture != null) {
+                // also removes the scan from the queue if it did not start yet
+                scanFuture.cancel(true);
+            } else if (activeEntries == 0 && scanFiles != null) {
+                scanFiles.cancel();
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final PsiFile psiFile;
+        private final MypyAnnotationScheduler.Request request;
+        private final CompletableFuture<List<Problem>> result = new CompletableFuture<>();
+
+        Entry(final PsiFile psiFile, final MypyAnnotationScheduler.Request request) {
+            this.psiFile = psiFile;
+            this.request = request;
+        }
+
+        @Nullable
+        List<Problem> await(final Batch batch) {
+            while (true) {
+                try {
+                    ProgressManager.checkCanceled();
+                } catch (ProcessCanceledException e) {
+                    batch.drop(this);
+                    throw e;
+                }
+                try {
+                    return result.get(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // keep waiting
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                } catch (ExecutionException e) {
+                    return null;
+                }
+            }
+        }
+    }
+}
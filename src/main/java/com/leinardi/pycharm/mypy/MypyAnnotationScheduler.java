@@ -0,0 +1,184 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy;
+
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.TimeoutUtil;
+import com.leinardi.pycharm.mypy.checker.Problem;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Coalesces the annotator requests for a file: a request only starts Mypy once the file has not been edited for the
+ * configured quiet window, and a newer request cancels the Mypy run of the request it supersedes.
+ * <p>
+ * The results of the last completed run of each file are kept, so that the annotator can keep showing them while
+ * the next run is pending.
+ */
+@Service
+public final class MypyAnnotationScheduler {
+    private static final long POLL_INTERVAL_MILLIS = 20;
+
+    private final Project project;
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+
+    public MypyAnnotationScheduler(@NotNull final Project project) {
+        this.project = project;
+    }
+
+    public static MypyAnnotationScheduler getInstance(@NotNull final Project project) {
+        return project.getService(MypyAnnotationScheduler.class);
+    }
+
+    /**
+     * Register a new request for a file, superseding (and cancelling) the previous one.
+     *
+     * @param file the file to check.
+     * @return the new request.
+     */
+    @NotNull
+    public Request newRequest(@NotNull final VirtualFile file) {
+        Slot slot = slots.computeIfAbsent(file.getPath(), path -> new Slot());
+        synchronized (slot) {
+            slot.generation++;
+            if (slot.inFlight != null) {
+                slot.inFlight.run();
+                slot.inFlight = null;
+            }
+            return new Request(slot, slot.generation);
+        }
+    }
+
+    /**
+     * Get the results of the last completed run for a file, dropping the ones whose file is no longer valid.
+     *
+     * @param file the file.
+     * @return the last known problems of the file.
+     */
+    @NotNull
+    public List<Problem> getLastResults(@NotNull final VirtualFile file) {
+        Slot slot = slots.get(file.getPath());
+        if (slot == null) {
+            return Collections.emptyList();
+        }
+        synchronized (slot) {
+            return slot.lastResults.stream().filter(Problem::isValid).collect(Collectors.toList());
+        }
+    }
+
+    private long getQuietWindowMillis() {
+        MypyConfigService mypyConfigService = MypyConfigService.getInstance(project);
+        return mypyConfigService == null ? 0 : Math.max(0, mypyConfigService.getAnnotatorDebounceMillis());
+    }
+
+    private static final class Slot {
+        private long generation;
+        @Nullable
+        private Runnable inFlight;
+        private List<Problem> lastResults = Collections.emptyList();
+    }
+
+    /**
+     * An annotator request for a file.
+     */
+    public final class Request {
+        private final Slot slot;
+        private final long generation;
+        private volatile boolean partial;
+
+        private Request(final Slot slot, final long generation) {
+            this.slot = slot;
+            this.generation = generation;
+        }
+
+        /**
+         * Wait for the quiet window to elapse.
+         *
+         * @return false if the request has been superseded meanwhile.
+         */
+        public boolean awaitQuietWindow() {
+            long deadline = System.currentTimeMillis() + getQuietWindowMillis();
+            while (System.currentTimeMillis() < deadline) {
+                ProgressManager.checkCanceled();
+                if (isSuperseded()) {
+                    return false;
+                }
+                TimeoutUtil.sleep(POLL_INTERVAL_MILLIS);
+            }
+            return !isSuperseded();
+        }
+
+        /**
+         * Register the scan running for this request, so that a newer request can cancel it.
+         *
+         * @param cancelAction cancels the scan, or the part of it checking this file.
+         * @return false if the request has already been superseded, in which case the scan must not be run.
+         */
+        public boolean start(@NotNull final Runnable cancelAction) {
+            synchronized (slot) {
+                if (slot.generation != generation) {
+                    return false;
+                }
+                slot.inFlight = cancelAction;
+                return true;
+            }
+        }
+
+        /**
+         * Record the results of the request, if it completed and has not been superseded.
+         *
+         * @param problems the problems found, or null if the scan did not complete.
+         */
+        public void finish(@Nullable final List<Problem> problems) {
+            synchronized (slot) {
+                if (slot.generation != generation) {
+                    return;
+                }
+                slot.inFlight = null;
+                if (problems != null) {
+                    slot.lastResults = problems;
+                }
+            }
+        }
+
+        public boolean isSuperseded() {
+            synchronized (slot) {
+                return slot.generation != generation;
+            }
+        }
+
+        /**
+         * Record that Mypy timed out while checking the file, and that its results must not be cached.
+         */
+        public void markPartial() {
+            partial = true;
+        }
+
+        public boolean isPartial() {
+            return partial;
+        }
+    }
+}
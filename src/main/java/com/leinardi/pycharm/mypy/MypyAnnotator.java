@@ -23,13 +23,14 @@ import com.intellij.lang.annotation.ExternalAnnotator;
 import com.intellij.lang.annotation.HighlightSeverity;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.profile.codeInspection.InspectionProjectProfileManager;
 import com.intellij.psi.PsiFile;
 import com.leinardi.pycharm.mypy.checker.Problem;
-import com.leinardi.pycharm.mypy.checker.ScanFiles;
 import com.leinardi.pycharm.mypy.checker.ScannableFile;
 import com.leinardi.pycharm.mypy.exception.MypyPluginParseException;
+import com.leinardi.pycharm.mypy.mpapi.Issue;
 import com.leinardi.pycharm.mypy.mpapi.MypyRunner;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -38,12 +39,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 import static com.leinardi.pycharm.mypy.MypyBundle.message;
 import static com.leinardi.pycharm.mypy.util.Notifications.showException;
 import static com.leinardi.pycharm.mypy.util.Notifications.showWarning;
-import static java.util.Collections.singletonList;
 
 /**
  * Using the `ExternalAnnotator` API instead of `LocalInspectionTool`, because the former has better behavior with
@@ -121,23 +120,63 @@ public class MypyAnnotator extends ExternalAnnotator<MypyAnnotator.State, MypyAn
             return NO_PROBLEMS_FOUND;
         }
 
-        final List<ScannableFile> scannableFiles = new ArrayList<>();
         try {
-            scannableFiles.addAll(ScannableFile.createAndValidate(singletonList(psiFile), plugin));
-            if (scannableFiles.isEmpty()) {
+            // the copies of the file are only created by the scan, on a cache miss
+            if (!ScannableFile.isScannable(psiFile, project)) {
                 return NO_PROBLEMS_FOUND;
             }
-            ScanFiles scanFiles = new ScanFiles(plugin, Collections.singletonList(psiFile.getVirtualFile()));
-            Map<PsiFile, List<Problem>> map = scanFiles.call();
-            map.values().forEach(problems -> problems.removeIf(problem ->
-                    problem.getMessage().equals(ERROR_MESSAGE_INVALID_SYNTAX)));
-            if (map.isEmpty()) {
+            MypyAnnotationScheduler.Request request =
+                    MypyAnnotationScheduler.getInstance(project).newRequest(psiFile.getVirtualFile());
+            MypyResultCache resultCache = MypyResultCache.getInstance(project);
+            MypyResultCache.Key cacheKey = resultCache.keyFor(psiFile);
+            if (cacheKey != null) {
+                List<Problem> cachedProblems = resultCache.get(cacheKey);
+                if (cachedProblems != null) {
+                    LOG.debug("Mypy results served from cache: " + psiFile.getName());
+                    request.finish(cachedProblems);
+                    return new Results(cachedProblems);
+                }
+                MypyIssueStore issueStore = MypyIssueStore.getInstance(project);
+                List<Issue> storedIssues = issueStore.get(cacheKey);
+                if (storedIssues != null) {
+                    LOG.debug("Mypy results served from the issue store: " + psiFile.getName());
+                    List<Problem> storedProblems = withoutSyntaxErrors(issueStore.toProblems(psiFile, storedIssues));
+                    request.finish(storedProblems);
+                    if (issueStore.isVerified(cacheKey)) {
+                        resultCache.put(cacheKey, storedProblems);
+                    } else {
+                        // read from the disk: shown until the file has been checked again in the background
+                        issueStore.recheck(cacheKey, psiFile.getVirtualFile());
+                    }
+                    return new Results(storedProblems);
+                }
+            }
+            if (!request.awaitQuietWindow()) {
+                LOG.debug("Mypy scan superseded by a newer edit: " + psiFile.getName());
+                return lastResults(psiFile);
+            }
+            List<Problem> scannedProblems = MypyAnnotationBatcher.getInstance(project).scan(psiFile, request);
+            if (scannedProblems == null) {
+                request.finish(null);
+                if (request.isSuperseded()) {
+                    LOG.debug("Mypy scan cancelled by a newer edit: " + psiFile.getName());
+                    return lastResults(psiFile);
+                }
+                return NO_PROBLEMS_FOUND;
+            }
+            List<Problem> problems = withoutSyntaxErrors(scannedProblems);
+            request.finish(problems);
+            if (cacheKey != null && !request.isPartial()) {
+                ProgressManager.checkCanceled();
+                resultCache.put(cacheKey, problems);
+            }
+            if (problems.isEmpty()) {
                 return NO_PROBLEMS_FOUND;
             }
 
             long duration = System.currentTimeMillis() - startTime;
             LOG.debug("Mypy scan completed: " + psiFile.getName() + " in " + duration + " ms");
-            return new Results(map.get(psiFile));
+            return new Results(problems);
 
         } catch (ProcessCanceledException | AssertionError e) {
             LOG.debug("Process cancelled when scanning: " + psiFile.getName());
@@ -150,9 +189,6 @@ public class MypyAnnotator extends ExternalAnnotator<MypyAnnotator.State, MypyAn
         } catch (Throwable e) {
             handlePluginException(e, psiFile, project);
             return NO_PROBLEMS_FOUND;
-
-        } finally {
-            scannableFiles.forEach(ScannableFile::deleteIfRequired);
         }
     }
 
@@ -176,6 +212,25 @@ public class MypyAnnotator extends ExternalAnnotator<MypyAnnotator.State, MypyAn
         }
     }
 
+    /**
+     * Filter out the syntax errors, already reported by the IDE. The problems are copied, as they may be a read-only
+     * view of the scan results.
+     */
+    static List<Problem> withoutSyntaxErrors(@NotNull final List<Problem> problems) {
+        List<Problem> filtered = new ArrayList<>(problems.size());
+        for (Problem problem : problems) {
+            if (!ERROR_MESSAGE_INVALID_SYNTAX.equals(problem.getMessage())) {
+                filtered.add(problem);
+            }
+        }
+        return filtered;
+    }
+
+    private Results lastResults(@NotNull final PsiFile psiFile) {
+        return new Results(MypyAnnotationScheduler.getInstance(psiFile.getProject())
+                .getLastResults(psiFile.getVirtualFile()));
+    }
+
     private void handlePluginException(final Throwable e,
                                        final @NotNull PsiFile psiFile,
                                        final @NotNull Project project) {
@@ -30,11 +30,34 @@ public class MypyConfigService implements PersistentStateComponent<MypyConfigSer
     private String mypyConfigFilePath;
     private String mypyArguments;
     private boolean scanBeforeCheckin;
+    private boolean useDaemon;
+    private int daemonPoolSize;
+    private int daemonIdleTimeoutMinutes;
+    private int daemonMaxRssMegabytes;
+    private int annotatorDebounceMillis;
+    private boolean shardedScans;
+    private int maxConcurrentShards;
+    private boolean incrementalScans;
+    private int incrementalScanDelayMillis;
+    private int maxConcurrentScans;
+    private int annotatorScanTimeoutSeconds;
+    private int checkinScanTimeoutSeconds;
+    private int projectScanTimeoutSeconds;
 
     public MypyConfigService() {
         customMypyPath = "";
         mypyArguments = "";
         mypyConfigFilePath = "";
+        daemonPoolSize = 2;
+        daemonIdleTimeoutMinutes = 30;
+        daemonMaxRssMegabytes = 4096;
+        annotatorDebounceMillis = 300;
+        maxConcurrentShards = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        incrementalScanDelayMillis = 1000;
+        maxConcurrentScans = 2;
+        annotatorScanTimeoutSeconds = 60;
+        checkinScanTimeoutSeconds = 300;
+        projectScanTimeoutSeconds = 600;
     }
 
     public String getCustomMypyPath() {
@@ -69,6 +92,110 @@ public class MypyConfigService implements PersistentStateComponent<MypyConfigSer
         this.scanBeforeCheckin = scanBeforeCheckin;
     }
 
+    public boolean isUseDaemon() {
+        return useDaemon;
+    }
+
+    public void setUseDaemon(boolean useDaemon) {
+        this.useDaemon = useDaemon;
+    }
+
+    public int getDaemonPoolSize() {
+        return daemonPoolSize;
+    }
+
+    public void setDaemonPoolSize(int daemonPoolSize) {
+        this.daemonPoolSize = daemonPoolSize;
+    }
+
+    public int getDaemonIdleTimeoutMinutes() {
+        return daemonIdleTimeoutMinutes;
+    }
+
+    public void setDaemonIdleTimeoutMinutes(int daemonIdleTimeoutMinutes) {
+        this.daemonIdleTimeoutMinutes = daemonIdleTimeoutMinutes;
+    }
+
+    public int getDaemonMaxRssMegabytes() {
+        return daemonMaxRssMegabytes;
+    }
+
+    public void setDaemonMaxRssMegabytes(int daemonMaxRssMegabytes) {
+        this.daemonMaxRssMegabytes = daemonMaxRssMegabytes;
+    }
+
+    public int getAnnotatorDebounceMillis() {
+        return annotatorDebounceMillis;
+    }
+
+    public void setAnnotatorDebounceMillis(int annotatorDebounceMillis) {
+        this.annotatorDebounceMillis = annotatorDebounceMillis;
+    }
+
+    public boolean isShardedScans() {
+        return shardedScans;
+    }
+
+    public void setShardedScans(boolean shardedScans) {
+        this.shardedScans = shardedScans;
+    }
+
+    public int getMaxConcurrentShards() {
+        return maxConcurrentShards;
+    }
+
+    public void setMaxConcurrentShards(int maxConcurrentShards) {
+        this.maxConcurrentShards = maxConcurrentShards;
+    }
+
+    public boolean isIncrementalScans() {
+        return incrementalScans;
+    }
+
+    public void setIncrementalScans(boolean incrementalScans) {
+        this.incrementalScans = incrementalScans;
+    }
+
+    public int getIncrementalScanDelayMillis() {
+        return incrementalScanDelayMillis;
+    }
+
+    public void setIncrementalScanDelayMillis(int incrementalScanDelayMillis) {
+        this.incrementalScanDelayMillis = incrementalScanDelayMillis;
+    }
+
+    public int getMaxConcurrentScans() {
+        return maxConcurrentScans;
+    }
+
+    public void setMaxConcurrentScans(int maxConcurrentScans) {
+        this.maxConcurrentScans = maxConcurrentScans;
+    }
+
+    public int getAnnotatorScanTimeoutSeconds() {
+        return annotatorScanTimeoutSeconds;
+    }
+
+    public void setAnnotatorScanTimeoutSeconds(int annotatorScanTimeoutSeconds) {
+        this.annotatorScanTimeoutSeconds = annotatorScanTimeoutSeconds;
+    }
+
+    public int getCheckinScanTimeoutSeconds() {
+        return checkinScanTimeoutSeconds;
+    }
+
+    public void setCheckinScanTimeoutSeconds(int checkinScanTimeoutSeconds) {
+        this.checkinScanTimeoutSeconds = checkinScanTimeoutSeconds;
+    }
+
+    public int getProjectScanTimeoutSeconds() {
+        return projectScanTimeoutSeconds;
+    }
+
+    public void setProjectScanTimeoutSeconds(int projectScanTimeoutSeconds) {
+        this.projectScanTimeoutSeconds = projectScanTimeoutSeconds;
+    }
+
     @Nullable
     @Override
     public MypyConfigService getState() {
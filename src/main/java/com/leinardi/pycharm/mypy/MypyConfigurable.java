@@ -16,9 +16,12 @@
 
 package com.leinardi.pycharm.mypy;
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.options.Configurable;
 import com.intellij.openapi.project.Project;
+import com.leinardi.pycharm.mypy.mpapi.MypyProcessPool;
+import com.leinardi.pycharm.mypy.mpapi.MypyToolchainCache;
 import com.leinardi.pycharm.mypy.ui.MypyConfigPanel;
 import org.jetbrains.annotations.NotNull;
 
@@ -33,6 +36,7 @@ public class MypyConfigurable implements Configurable {
 
     private final MypyConfigPanel configPanel;
     private final MypyConfigService mypyConfigService;
+    private final Project project;
 
     public MypyConfigurable(@NotNull final Project project) {
         this(project, new MypyConfigPanel(project));
@@ -41,6 +45,7 @@ public class MypyConfigurable implements Configurable {
     MypyConfigurable(@NotNull final Project project,
                      @NotNull final MypyConfigPanel configPanel) {
         this.configPanel = configPanel;
+        this.project = project;
         mypyConfigService = MypyConfigService.getInstance(project);
     }
 
@@ -62,24 +67,69 @@ public class MypyConfigurable implements Configurable {
 
     @Override
     public void reset() {
+        configPanel.setUseDaemon(mypyConfigService.isUseDaemon());
+        configPanel.setDaemonPoolSize(mypyConfigService.getDaemonPoolSize());
+        configPanel.setDaemonIdleTimeoutMinutes(mypyConfigService.getDaemonIdleTimeoutMinutes());
+        configPanel.setDaemonMaxRssMegabytes(mypyConfigService.getDaemonMaxRssMegabytes());
+        configPanel.setAnnotatorDebounceMillis(mypyConfigService.getAnnotatorDebounceMillis());
+        configPanel.setIncrementalScans(mypyConfigService.isIncrementalScans());
+        configPanel.setIncrementalScanDelayMillis(mypyConfigService.getIncrementalScanDelayMillis());
+        configPanel.setShardedScans(mypyConfigService.isShardedScans());
+        configPanel.setMaxConcurrentShards(mypyConfigService.getMaxConcurrentShards());
+        configPanel.setAnnotatorScanTimeoutSeconds(mypyConfigService.getAnnotatorScanTimeoutSeconds());
+        configPanel.setCheckinScanTimeoutSeconds(mypyConfigService.getCheckinScanTimeoutSeconds());
+        configPanel.setProjectScanTimeoutSeconds(mypyConfigService.getProjectScanTimeoutSeconds());
+        configPanel.setMaxConcurrentScans(mypyConfigService.getMaxConcurrentScans());
     }
 
     @Override
     public boolean isModified() {
         boolean result = !configPanel.getMypyPath().equals(mypyConfigService.getCustomMypyPath())
                 || !configPanel.getMypyConfigFilePath().equals(mypyConfigService.getMypyConfigFilePath())
-                || !configPanel.getMypyArguments().equals(mypyConfigService.getMypyArguments());
+                || !configPanel.getMypyArguments().equals(mypyConfigService.getMypyArguments())
+                || configPanel.isUseDaemon() != mypyConfigService.isUseDaemon()
+                || configPanel.getDaemonPoolSize() != mypyConfigService.getDaemonPoolSize()
+                || configPanel.getDaemonIdleTimeoutMinutes() != mypyConfigService.getDaemonIdleTimeoutMinutes()
+                || configPanel.getDaemonMaxRssMegabytes() != mypyConfigService.getDaemonMaxRssMegabytes()
+                || configPanel.getAnnotatorDebounceMillis() != mypyConfigService.getAnnotatorDebounceMillis()
+                || configPanel.isIncrementalScans() != mypyConfigService.isIncrementalScans()
+                || configPanel.getIncrementalScanDelayMillis() != mypyConfigService.getIncrementalScanDelayMillis()
+                || configPanel.isShardedScans() != mypyConfigService.isShardedScans()
+                || configPanel.getMaxConcurrentShards() != mypyConfigService.getMaxConcurrentShards()
+                || configPanel.getAnnotatorScanTimeoutSeconds() != mypyConfigService.getAnnotatorScanTimeoutSeconds()
+                || configPanel.getCheckinScanTimeoutSeconds() != mypyConfigService.getCheckinScanTimeoutSeconds()
+                || configPanel.getProjectScanTimeoutSeconds() != mypyConfigService.getProjectScanTimeoutSeconds()
+                || configPanel.getMaxConcurrentScans() != mypyConfigService.getMaxConcurrentScans();
         if (LOG.isDebugEnabled()) {
             LOG.debug("Has config changed? " + result);
         }
         return result;
     }
 
+    @SuppressWarnings("FutureReturnValueIgnored")
     @Override
     public void apply() {
         mypyConfigService.setCustomMypyPath(configPanel.getMypyPath());
         mypyConfigService.setMypyConfigFilePath(configPanel.getMypyConfigFilePath());
         mypyConfigService.setMypyArguments(configPanel.getMypyArguments());
+        mypyConfigService.setUseDaemon(configPanel.isUseDaemon());
+        mypyConfigService.setDaemonPoolSize(configPanel.getDaemonPoolSize());
+        mypyConfigService.setDaemonIdleTimeoutMinutes(configPanel.getDaemonIdleTimeoutMinutes());
+        mypyConfigService.setDaemonMaxRssMegabytes(configPanel.getDaemonMaxRssMegabytes());
+        mypyConfigService.setAnnotatorDebounceMillis(configPanel.getAnnotatorDebounceMillis());
+        mypyConfigService.setIncrementalScans(configPanel.isIncrementalScans());
+        mypyConfigService.setIncrementalScanDelayMillis(configPanel.getIncrementalScanDelayMillis());
+        mypyConfigService.setShardedScans(configPanel.isShardedScans());
+        mypyConfigService.setMaxConcurrentShards(configPanel.getMaxConcurrentShards());
+        mypyConfigService.setAnnotatorScanTimeoutSeconds(configPanel.getAnnotatorScanTimeoutSeconds());
+        mypyConfigService.setCheckinScanTimeoutSeconds(configPanel.getCheckinScanTimeoutSeconds());
+        mypyConfigService.setProjectScanTimeoutSeconds(configPanel.getProjectScanTimeoutSeconds());
+        mypyConfigService.setMaxConcurrentScans(configPanel.getMaxConcurrentScans());
+        MypyToolchainCache.getInstance(project).invalidate();
+        if (!mypyConfigService.isUseDaemon()) {
+            ApplicationManager.getApplication().executeOnPooledThread(
+                    () -> MypyProcessPool.getInstance(project).stopAll());
+        }
     }
 
     @Override
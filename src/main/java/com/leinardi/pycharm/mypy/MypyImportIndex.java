@@ -0,0 +1,250 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.FileTypeIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.QualifiedName;
+import com.jetbrains.python.PyNames;
+import com.jetbrains.python.PythonFileType;
+import com.jetbrains.python.psi.PyFile;
+import com.jetbrains.python.psi.PyFromImportStatement;
+import com.jetbrains.python.psi.PyImportElement;
+import com.jetbrains.python.psi.PyImportStatementBase;
+import com.jetbrains.python.psi.resolve.QualifiedNameFinder;
+import com.leinardi.pycharm.mypy.util.FileTypes;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reverse import dependencies of the Python files of a project, so that the files importing a changed module can be
+ * checked again.
+ * <p>
+ * The index is built from the import statements of the PSI on first use, then kept up to date by re-indexing the
+ * files changed on disk the next time it is queried. Each file is indexed in its own non-blocking read action, which
+ * gives way to the write actions.
+ */
+@Service
+public final class MypyImportIndex implements Disposable {
+    private static final Logger LOG = Logger.getInstance(MypyImportIndex.class);
+
+    private final Project project;
+    private final ImportGraph graph = new ImportGraph();
+    private final Set<VirtualFile> staleFiles = new LinkedHashSet<>();
+    private boolean built;
+
+    public MypyImportIndex(@NotNull final Project project) {
+        this.project = project;
+        project.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                filesChanged(events);
+            }
+        });
+    }
+
+    public static MypyImportIndex getInstance(@NotNull final Project project) {
+        return project.getService(MypyImportIndex.class);
+    }
+
+    /**
+     * Get the files importing, directly or not, some files. Builds the index first if needed, so expected to be
+     * called in the background.
+     *
+     * @param files    the files.
+     * @param maxFiles the maximum number of dependents to return.
+     * @return the dependents, the direct ones first, not including the given files.
+     */
+    @NotNull
+    public Set<VirtualFile> getDependents(@NotNull final Collection<VirtualFile> files, final int maxFiles) {
+        update();
+        List<String> paths = new ArrayList<>();
+        for (VirtualFile file : files) {
+            paths.add(file.getPath());
+        }
+        Set<String> dependentPaths;
+        synchronized (graph) {
+            dependentPaths = graph.getDependents(paths, maxFiles);
+        }
+        Set<VirtualFile> dependents = new LinkedHashSet<>();
+        for (String path : dependentPaths) {
+            VirtualFile dependent = LocalFileSystem.getInstance().findFileByPath(path);
+            if (dependent != null) {
+                dependents.add(dependent);
+            }
+        }
+        return dependents;
+    }
+
+    @Override
+    public void dispose() {
+        synchronized (graph) {
+            staleFiles.clear();
+        }
+    }
+
+    private void filesChanged(final List<? extends VFileEvent> events) {
+        synchronized (graph) {
+            for (VFileEvent event : events) {
+                VirtualFile file = event.getFile();
+                if (event instanceof VFileDeleteEvent) {
+                    graph.remove(event.getPath());
+                } else if (event instanceof VFileMoveEvent) {
+                    graph.remove(((VFileMoveEvent) event).getOldPath());
+                } else if (event instanceof VFilePropertyChangeEvent
+                        && ((VFilePropertyChangeEvent) event).isRename()) {
+                    graph.remove(((VFilePropertyChangeEvent) event).getOldPath());
+                }
+                if (!(event instanceof VFileDeleteEvent) && file != null && !file.isDirectory()
+                        && FileTypes.isPython(file.getFileType())) {
+                    staleFiles.add(file);
+                }
+            }
+        }
+    }
+
+    private void update() {
+        List<VirtualFile> filesToIndex;
+        synchronized (graph) {
+            if (built) {
+                filesToIndex = new ArrayList<>(staleFiles);
+            } else {
+                built = true;
+                filesToIndex = new ArrayList<>(DumbService.getInstance(project).runReadActionInSmartMode(() ->
+                        FileTypeIndex.getFiles(PythonFileType.INSTANCE, GlobalSearchScope.projectScope(project))));
+                LOG.info("Building the Mypy import index of " + filesToIndex.size() + " files");
+            }
+            staleFiles.clear();
+        }
+        for (int i = 0; i < filesToIndex.size(); i++) {
+            VirtualFile file = filesToIndex.get(i);
+            FileImports fileImports;
+            try {
+                // one non-blocking read action per file: restarted when a write action comes in, instead of
+                // delaying it
+                fileImports = ReadAction.nonBlocking(() -> findImports(file))
+                        .expireWith(this)
+                        .executeSynchronously();
+            } catch (ProcessCanceledException e) {
+                LOG.debug("Mypy import indexing cancelled");
+                synchronized (graph) {
+                    staleFiles.addAll(filesToIndex.subList(i, filesToIndex.size()));
+                }
+                return;
+            }
+            synchronized (graph) {
+                if (fileImports == null) {
+                    graph.remove(file.getPath());
+                } else {
+                    graph.put(file.getPath(), fileImports.module, fileImports.imports);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collect the modules imported by a file. The whole PSI is visited, not only the stubs, as the imports nested in
+     * {@code if TYPE_CHECKING:} blocks or in functions matter to Mypy as well.
+     *
+     * @return the imports, or null if the file is not a Python file anymore.
+     */
+    @Nullable
+    private FileImports findImports(final VirtualFile file) {
+        PsiFile psiFile = file.isValid() && !project.isDisposed()
+                ? PsiManager.getInstance(project).findFile(file) : null;
+        if (!(psiFile instanceof PyFile)) {
+            return null;
+        }
+        QualifiedName moduleName = QualifiedNameFinder.findShortestImportableQName(psiFile);
+        String module = moduleName == null ? null : moduleName.toString();
+        boolean isPackage = PyNames.INIT_DOT_PY.equals(file.getName()) || "__init__.pyi".equals(file.getName());
+        Set<String> imports = new HashSet<>();
+        for (PyImportStatementBase statement : PsiTreeUtil.findChildrenOfType(psiFile, PyImportStatementBase.class)) {
+            ProgressManager.checkCanceled();
+            String source = null;
+            if (statement instanceof PyFromImportStatement) {
+                PyFromImportStatement fromImport = (PyFromImportStatement) statement;
+                QualifiedName sourceName = fromImport.getImportSourceQName();
+                if (fromImport.getRelativeLevel() > 0) {
+                    source = module == null ? null : ImportGraph.resolveRelativeImport(module, isPackage,
+                            fromImport.getRelativeLevel(), sourceName == null ? null : sourceName.toString());
+                } else if (sourceName != null) {
+                    source = sourceName.toString();
+                }
+                if (source == null) {
+                    continue;
+                }
+                addWithParents(imports, source);
+            }
+            for (PyImportElement element : statement.getImportElements()) {
+                QualifiedName importedName = element.getImportedQName();
+                if (importedName != null) {
+                    // for a from import, the imported name may be a submodule of the source
+                    addWithParents(imports, source == null ? importedName.toString() : source + '.' + importedName);
+                }
+            }
+        }
+        return new FileImports(module, imports);
+    }
+
+    /**
+     * Importing a module imports its parent packages as well.
+     */
+    private static void addWithParents(final Set<String> imports, final String module) {
+        String name = module;
+        while (imports.add(name) && name.indexOf('.') > 0) {
+            name = name.substring(0, name.lastIndexOf('.'));
+        }
+    }
+
+    private static final class FileImports {
+        @Nullable
+        private final String module;
+        private final Set<String> imports;
+
+        FileImports(@Nullable final String module, @NotNull final Set<String> imports) {
+            this.module = module;
+            this.imports = imports;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.leinardi.pycharm.mypy.checker.ScanPriority;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-checks in the background the files changed on disk or edited in the editors, and updates their results in the
+ * tool window in place, so that the project-wide view stays current without full scans.
+ * <p>
+ * Changes, including each keystroke in an editor, are collected in a dirty set and checked together once no new change
+ * arrived for the configured delay. A
+ * single incremental scan runs at a time: the files changed meanwhile are checked by the next one. The files importing
+ * the changed ones, found through the {@link MypyImportIndex}, are checked afterwards, once no changed file is left.
+ */
+@Service
+public final class MypyIncrementalScanner implements Disposable {
+    private static final Logger LOG = Logger.getInstance(MypyIncrementalScanner.class);
+    private static final int MAX_DEPENDENTS = 500;
+
+    private final Project project;
+    private final Set<VirtualFile> dirtyFiles = new LinkedHashSet<>();
+    private final Set<VirtualFile> dependentFiles = new LinkedHashSet<>();
+    private ScheduledFuture<?> pendingScan;
+    private boolean scanRunning;
+    private boolean disposed;
+
+    public MypyIncrementalScanner(@NotNull final Project project) {
+        this.project = project;
+    }
+
+    public static MypyIncrementalScanner getInstance(@NotNull final Project project) {
+        return project.getService(MypyIncrementalScanner.class);
+    }
+
+    /**
+     * Mark files as changed, scheduling their check.
+     *
+     * @param files the changed files.
+     */
+    public synchronized void filesChanged(@NotNull final Collection<VirtualFile> files) {
+        if (disposed) {
+            return;
+        }
+        dirtyFiles.addAll(files);
+        scheduleScan();
+    }
+
+    @Override
+    public synchronized void dispose() {
+        disposed = true;
+        dirtyFiles.clear();
+        dependentFiles.clear();
+        if (pendingScan != null) {
+            pendingScan.cancel(false);
+        }
+    }
+
+    private void scheduleScan() {
+        if (pendingScan != null) {
+            pendingScan.cancel(false);
+        }
+        MypyConfigService mypyConfigService = MypyConfigService.getInstance(project);
+        long delayMillis = mypyConfigService == null ? 0 : mypyConfigService.getIncrementalScanDelayMillis();
+        pendingScan = AppExecutorUtil.getAppScheduledExecutorService()
+                .schedule(this::scanDirtyFiles, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @SuppressWarnings("FutureReturnValueIgnored")
+    private void scanDirtyFiles() {
+        List<VirtualFile> changedFiles;
+        boolean dependentsOnly;
+        synchronized (this) {
+            pendingScan = null;
+            dependentsOnly = dirtyFiles.isEmpty();
+            Set<VirtualFile> pendingFiles = dependentsOnly ? dependentFiles : dirtyFiles;
+            if (disposed || scanRunning || pendingFiles.isEmpty()) {
+                return;
+            }
+            changedFiles = new ArrayList<>(pendingFiles);
+            pendingFiles.clear();
+            dependentFiles.removeAll(changedFiles);
+            scanRunning = true;
+        }
+        List<VirtualFile> filesToScan = ReadAction.compute(() -> {
+            List<VirtualFile> files = new ArrayList<>();
+            if (!project.isDisposed()) {
+                ProjectFileIndex projectFileIndex = ProjectFileIndex.getInstance(project);
+                for (VirtualFile file : changedFiles) {
+                    if (file.isValid() && projectFileIndex.isInContent(file) && !projectFileIndex.isExcluded(file)) {
+                        files.add(file);
+                    }
+                }
+            }
+            return files;
+        });
+        if (filesToScan.isEmpty()) {
+            scanFinished();
+            return;
+        }
+        if (!dependentsOnly) {
+            Set<VirtualFile> dependents =
+                    MypyImportIndex.getInstance(project).getDependents(filesToScan, MAX_DEPENDENTS);
+            synchronized (this) {
+                dependentFiles.addAll(dependents);
+            }
+        }
+        LOG.debug("Incremental Mypy scan of " + filesToScan.size()
+                + (dependentsOnly ? " dependent files" : " changed files"));
+        try {
+            // the returned future also completes when the scan is cancelled before it started, unlike the listeners
+            project.getService(MypyPlugin.class)
+                    .asyncRescanFiles(filesToScan, dependentsOnly ? ScanPriority.DEPENDENTS : ScanPriority.BACKGROUND)
+                    .whenComplete((results, error) -> scanFinished());
+        } catch (RuntimeException e) {
+            scanFinished();
+            throw e;
+        }
+    }
+
+    private synchronized void scanFinished() {
+        scanRunning = false;
+        if (!disposed && (!dirtyFiles.isEmpty() || !dependentFiles.isEmpty())) {
+            scheduleScan();
+        }
+    }
+}
@@ -0,0 +1,426 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy;
+
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.leinardi.pycharm.mypy.checker.Problem;
+import com.leinardi.pycharm.mypy.checker.ProblemTable;
+import com.leinardi.pycharm.mypy.checker.ScanPriority;
+import com.leinardi.pycharm.mypy.mpapi.Issue;
+import com.leinardi.pycharm.mypy.mpapi.ProcessResultsThread;
+import com.leinardi.pycharm.mypy.mpapi.SeverityLevel;
+import com.leinardi.pycharm.mypy.toolwindow.MypyToolWindowPanel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.SwingUtilities;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the issues found by the scans on disk, so that they can be shown again after an IDE restart without running
+ * Mypy.
+ * <p>
+ * The issues are stored per file, together with the hash of the content that has been checked, in an append-only log
+ * under the system directory. Only the issues of the last Mypy configuration are kept: the log is rewritten when the
+ * configuration changes, or when it holds too many outdated records.
+ * <p>
+ * The issues read from the disk are only provisional, as the modules imported by a file may have changed while the
+ * IDE was closed: the files they are shown for are checked again in the background.
+ */
+@Service
+public final class MypyIssueStore {
+    private static final Logger LOG = Logger.getInstance(MypyIssueStore.class);
+    private static final int MAGIC = 0x4d595049;
+    private static final int VERSION = 2;
+    private static final int MIN_RECORDS_TO_COMPACT = 256;
+    private static final int MAX_MESSAGE_LENGTH = 16 * 1024;
+    private static final int TAB_WIDTH = 4;
+    private static final SeverityLevel[] SEVERITY_LEVELS = SeverityLevel.values();
+    private static final long RECHECK_DELAY_MILLIS = 1000;
+
+    private final Project project;
+    private final File storeFile;
+    private final Map<String, StoredFile> files = new HashMap<>();
+    private String configuration = "";
+    private int recordCount;
+    private boolean loaded;
+    private final Set<VirtualFile> pendingRechecks = new LinkedHashSet<>();
+    private boolean recheckScheduled;
+    private final AtomicReference<Map<PsiFile, List<Problem>>> restoredResults =
+            new AtomicReference<>(Collections.emptyMap());
+
+    public MypyIssueStore(@NotNull final Project project) {
+        this(project, new File(PathManager.getSystemPath() + File.separator + "mypy" + File.separator
+                + project.getLocationHash() + File.separator + "issues.bin"));
+    }
+
+    MypyIssueStore(@NotNull final Project project, @NotNull final File storeFile) {
+        this.project = project;
+        this.storeFile = storeFile;
+    }
+
+    public static MypyIssueStore getInstance(@NotNull final Project project) {
+        return project.getService(MypyIssueStore.class);
+    }
+
+    /**
+     * Get the issues stored for a check.
+     *
+     * @param key the key of the check.
+     * @return the issues, or null if the file has not been checked with the same content and configuration.
+     */
+    @Nullable
+    public synchronized List<Issue> get(@NotNull final MypyResultCache.Key key) {
+        ensureLoaded();
+        StoredFile storedFile = files.get(key.getPath());
+        if (storedFile == null || storedFile.contentHash != key.getContentHash()
+                || !configuration.equals(key.getConfiguration())) {
+            return null;
+        }
+        return storedFile.issues;
+    }
+
+    /**
+     * @param key the key of the check.
+     * @return true if the issues stored for the check have been found during this session, false if they have been
+     *         read from the disk or there are none.
+     */
+    public synchronized boolean isVerified(@NotNull final MypyResultCache.Key key) {
+        StoredFile storedFile = files.get(key.getPath());
+        return storedFile != null && storedFile.verified && storedFile.contentHash == key.getContentHash()
+                && configuration.equals(key.getConfiguration());
+    }
+
+    /**
+     * Check a file again in the background, at most once per session, because its stored issues have been read from
+     * the disk. The file is annotated again once the check completes.
+     *
+     * @param key  the key of the check.
+     * @param file the file.
+     */
+    @SuppressWarnings("FutureReturnValueIgnored")
+    public synchronized void recheck(@NotNull final MypyResultCache.Key key, @NotNull final VirtualFile file) {
+        StoredFile storedFile = files.get(key.getPath());
+        if (storedFile == null || storedFile.verified || storedFile.recheckRequested) {
+            return;
+        }
+        storedFile.recheckRequested = true;
+        pendingRechecks.add(file);
+        if (!recheckScheduled) {
+            recheckScheduled = true;
+            // the files opened together are checked together
+            AppExecutorUtil.getAppScheduledExecutorService()
+                    .schedule(this::recheckPendingFiles, RECHECK_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Store the issues found by a scan, replacing the ones previously stored for the same files.
+     *
+     * @param results the issues of each checked file, including the files without issues.
+     */
+    public synchronized void put(@NotNull final Map<MypyResultCache.Key, List<Issue>> results) {
+        if (results.isEmpty()) {
+            return;
+        }
+        ensureLoaded();
+        String resultsConfiguration = results.keySet().iterator().next().getConfiguration();
+        boolean configurationChanged = !resultsConfiguration.equals(configuration);
+        if (configurationChanged) {
+            files.clear();
+            configuration = resultsConfiguration;
+        }
+        Map<String, StoredFile> newFiles = new HashMap<>();
+        results.forEach((key, issues) -> {
+            if (key.getConfiguration().equals(resultsConfiguration)) {
+                newFiles.put(key.getPath(), new StoredFile(key.getContentHash(), issues, true));
+            }
+        });
+        files.putAll(newFiles);
+        try {
+            if (configurationChanged || !storeFile.isFile()
+                    || recordCount + newFiles.size() > Math.max(MIN_RECORDS_TO_COMPACT, 2 * files.size())) {
+                rewrite();
+            } else {
+                append(newFiles);
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to write the Mypy issue store " + storeFile, e);
+        }
+    }
+
+    /**
+     * Convert stored issues to problems of a file.
+     *
+     * @param psiFile the file.
+     * @param issues  the issues stored for the file.
+     * @return the problems.
+     */
+    @NotNull
+    public List<Problem> toProblems(@NotNull final PsiFile psiFile, @NotNull final List<Issue> issues) {
+        VirtualFile virtualFile = psiFile.getVirtualFile();
+        if (issues.isEmpty() || virtualFile == null) {
+            return new ArrayList<>();
+        }
+        String path = FileUtil.toSystemDependentName(virtualFile.getPath());
+        List<Issue> located = new ArrayList<>(issues.size());
+        for (Issue issue : issues) {
+            located.add(new Issue(path, issue.getLine(), issue.getColumn(), issue.getSeverityLevel(),
+                    issue.getMessage(), issue.getCode(), issue.getEndLine(), issue.getEndColumn()));
+        }
+        ProcessResultsThread processResultsThread = new ProcessResultsThread(false, TAB_WIDTH,
+                project.getBasePath(), located, Collections.singletonMap(path, psiFile));
+        ReadAction.nonBlocking(processResultsThread::run).executeSynchronously();
+        return new ArrayList<>(processResultsThread.getProblems().getOrDefault(psiFile, Collections.emptyList()));
+    }
+
+    /**
+     * Show the stored problems of the files whose content did not change since they were checked. Expected to be
+     * called in the background, as each stored file is loaded to verify its content.
+     */
+    public void restore() {
+        Map<String, StoredFile> storedFiles;
+        synchronized (this) {
+            ensureLoaded();
+            storedFiles = new HashMap<>(files);
+        }
+        MypyResultCache resultCache = MypyResultCache.getInstance(project);
+        ProblemTable restoredProblems = new ProblemTable();
+        for (Map.Entry<String, StoredFile> entry : storedFiles.entrySet()) {
+            if (project.isDisposed()) {
+                return;
+            }
+            if (entry.getValue().issues.isEmpty()) {
+                continue;
+            }
+            VirtualFile virtualFile = LocalFileSystem.getInstance().findFileByPath(entry.getKey());
+            if (virtualFile == null) {
+                continue;
+            }
+            PsiFile psiFile = ReadAction.compute(() -> virtualFile.isValid() && !project.isDisposed()
+                    ? PsiManager.getInstance(project).findFile(virtualFile) : null);
+            MypyResultCache.Key key = psiFile == null ? null : resultCache.keyFor(psiFile);
+            List<Issue> issues = key == null ? null : get(key);
+            if (issues != null) {
+                restoredProblems.add(psiFile, toProblems(psiFile, issues));
+            }
+        }
+        restoredProblems.trimToSize();
+        Map<PsiFile, List<Problem>> results = restoredProblems.asMap();
+        LOG.info("Restored the Mypy issues of " + results.size() + " files");
+        if (results.isEmpty()) {
+            return;
+        }
+        restoredResults.set(results);
+        SwingUtilities.invokeLater(() -> {
+            final MypyToolWindowPanel toolWindowPanel = MypyToolWindowPanel.panelFor(project);
+            if (toolWindowPanel != null) {
+                Map<PsiFile, List<Problem>> pendingResults = takeRestoredResults();
+                if (!pendingResults.isEmpty()) {
+                    toolWindowPanel.displayResults(pendingResults);
+                }
+            }
+        });
+    }
+
+    /**
+     * Take the problems of {@link #restore()} that have not been displayed yet, for a tool window opened after the
+     * restore. They are only returned once.
+     *
+     * @return the problems, or an empty map if they have already been displayed or superseded by a scan.
+     */
+    @NotNull
+    public Map<PsiFile, List<Problem>> takeRestoredResults() {
+        return restoredResults.getAndSet(Collections.emptyMap());
+    }
+
+    /**
+     * Drop the problems of {@link #restore()} not displayed yet, as they would hide the results of a newer scan.
+     */
+    public void clearRestoredResults() {
+        restoredResults.set(Collections.emptyMap());
+    }
+
+    @SuppressWarnings("FutureReturnValueIgnored")
+    private void recheckPendingFiles() {
+        List<VirtualFile> filesToRecheck;
+        synchronized (this) {
+            filesToRecheck = new ArrayList<>(pendingRechecks);
+            pendingRechecks.clear();
+            recheckScheduled = false;
+        }
+        if (filesToRecheck.isEmpty() || project.isDisposed()) {
+            return;
+        }
+        LOG.debug("Checking again " + filesToRecheck.size() + " files with issues restored from the disk");
+        project.getService(MypyPlugin.class).asyncRescanFiles(filesToRecheck, ScanPriority.DEPENDENTS)
+                .whenComplete((results, error) -> ApplicationManager.getApplication().invokeLater(() -> {
+                    PsiManager psiManager = PsiManager.getInstance(project);
+                    for (VirtualFile file : filesToRecheck) {
+                        PsiFile psiFile = file.isValid() ? psiManager.findFile(file) : null;
+                        if (psiFile != null) {
+                            DaemonCodeAnalyzer.getInstance(project).restart(psiFile);
+                        }
+                    }
+                }, project.getDisposed()));
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!storeFile.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(storeFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOG.info("Discarding the Mypy issue store " + storeFile + ", written by another version");
+                recordCount = Integer.MAX_VALUE / 2;
+                return;
+            }
+            configuration = in.readUTF();
+            while (true) {
+                String path;
+                try {
+                    path = in.readUTF();
+                } catch (EOFException e) {
+                    break;
+                }
+                files.put(path, readStoredFile(in));
+                recordCount++;
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to read the Mypy issue store " + storeFile + ", discarding its tail", e);
+            // rewrite the store on the next put, so that new records are not appended after a truncated one
+            recordCount = Integer.MAX_VALUE / 2;
+        }
+    }
+
+    private StoredFile readStoredFile(final DataInputStream in) throws IOException {
+        long contentHash = in.readLong();
+        int count = in.readInt();
+        List<Issue> issues = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int line = in.readInt();
+            int column = in.readInt();
+            int endLine = in.readInt();
+            int endColumn = in.readInt();
+            int severity = in.readByte();
+            String message = in.readUTF();
+            if (severity < 0 || severity >= SEVERITY_LEVELS.length) {
+                throw new IOException("Invalid severity " + severity);
+            }
+            issues.add(new Issue("", line, column, SEVERITY_LEVELS[severity], message, null, endLine, endColumn));
+        }
+        return new StoredFile(contentHash, issues, false);
+    }
+
+    private void append(final Map<String, StoredFile> newFiles) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(storeFile, true)))) {
+            writeStoredFiles(out, newFiles);
+        }
+        recordCount += newFiles.size();
+    }
+
+    private void rewrite() throws IOException {
+        File storeDir = storeFile.getParentFile();
+        //noinspection ResultOfMethodCallIgnored
+        storeDir.mkdirs();
+        Path temporaryFile = Files.createTempFile(storeDir.toPath(), storeFile.getName(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(configuration);
+                writeStoredFiles(out, files);
+            }
+            Files.move(temporaryFile, storeFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+        recordCount = files.size();
+    }
+
+    private static void writeStoredFiles(final DataOutputStream out, final Map<String, StoredFile> storedFiles)
+            throws IOException {
+        for (Map.Entry<String, StoredFile> entry : storedFiles.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue().contentHash);
+            out.writeInt(entry.getValue().issues.size());
+            for (Issue issue : entry.getValue().issues) {
+                out.writeInt(issue.getLine());
+                out.writeInt(issue.getColumn());
+                out.writeInt(issue.getEndLine());
+                out.writeInt(issue.getEndColumn());
+                out.writeByte(issue.getSeverityLevel().ordinal());
+                String message = issue.getMessage();
+                // writeUTF is limited to 64 KB
+                out.writeUTF(message.length() > MAX_MESSAGE_LENGTH
+                        ? message.substring(0, MAX_MESSAGE_LENGTH) : message);
+            }
+        }
+    }
+
+    private static final class StoredFile {
+        private final long contentHash;
+        private final List<Issue> issues;
+        private final boolean verified;
+        private boolean recheckRequested;
+
+        StoredFile(final long contentHash, final List<Issue> issues, final boolean verified) {
+            this.contentHash = contentHash;
+            this.issues = issues;
+            this.verified = verified;
+        }
+    }
+}
@@ -22,21 +22,21 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
+import com.leinardi.pycharm.mypy.checker.IncrementalScannerListener;
 import com.leinardi.pycharm.mypy.checker.Problem;
 import com.leinardi.pycharm.mypy.checker.ScanFiles;
-import com.leinardi.pycharm.mypy.checker.ScannerListener;
+import com.leinardi.pycharm.mypy.checker.ScanHandle;
+import com.leinardi.pycharm.mypy.checker.ScanPriority;
 import com.leinardi.pycharm.mypy.checker.UiFeedbackScannerListener;
-import com.leinardi.pycharm.mypy.exception.MypyPluginException;
-import com.leinardi.pycharm.mypy.util.Async;
+import com.leinardi.pycharm.mypy.mpapi.MypyProcessPool;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 
 import static com.leinardi.pycharm.mypy.util.Async.whenFinished;
@@ -49,8 +49,9 @@ public final class MypyPlugin {
 
     private static final Logger LOG = com.intellij.openapi.diagnostic.Logger.getInstance(MypyPlugin.class);
 
-    private final Set<Future<?>> checksInProgress = new HashSet<>();
     private final Project project;
+    private final MypyScanScheduler scanScheduler;
+    private final MypyScanRegistry scanRegistry = new MypyScanRegistry();
 
     /**
      * Construct a plug-in instance for the given project.
@@ -59,6 +60,7 @@ public final class MypyPlugin {
      */
     public MypyPlugin(@NotNull final Project project) {
         this.project = project;
+        this.scanScheduler = new MypyScanScheduler(project);
 
         LOG.info("Mypy Plugin loaded with project base dir: \"" + getProjectPath() + "\"");
 
@@ -81,48 +83,45 @@ public final class MypyPlugin {
     /**
      * Is a scan in progress?
      * <p>
-     * This is only expected to be called from the event thread.
+     * This does not lock, so that the actions can query it on each update.
      *
      * @return true if a scan is in progress.
      */
     public boolean isScanInProgress() {
-        synchronized (checksInProgress) {
-            return !checksInProgress.isEmpty();
-        }
+        return scanRegistry.isScanInProgress();
     }
 
-    public static void processErrorAndLog(@NotNull final String action, @NotNull final Throwable e) {
-        LOG.warn(action + " failed", e);
+    /**
+     * @return the scans in progress, the oldest first. Each of them can be cancelled individually.
+     */
+    @NotNull
+    public List<ScanHandle> getScansInProgress() {
+        return scanRegistry.getScans();
     }
 
-    private <T> Future<T> checkInProgress(final Future<T> checkFuture) {
-        synchronized (checksInProgress) {
-            if (!checkFuture.isDone()) {
-                checksInProgress.add(checkFuture);
-            }
-        }
-        return checkFuture;
+    public static void processErrorAndLog(@NotNull final String action, @NotNull final Throwable e) {
+        LOG.warn(action + " failed", e);
     }
 
-    public void stopChecks() {
-        synchronized (checksInProgress) {
-            checksInProgress.forEach(task -> task.cancel(true));
-            checksInProgress.clear();
+    /**
+     * Cancel all the scans in progress, stopping their Mypy processes and the daemons running them.
+     *
+     * @return the number of processes stopped, completed once all of them exited.
+     */
+    public CompletableFuture<Integer> stopChecks() {
+        MypyProcessPool processPool = project.getServiceIfCreated(MypyProcessPool.class);
+        if (processPool != null) {
+            processPool.abortChecks();
         }
+        return scanRegistry.cancelAll();
     }
 
-    public <T> void checkComplete(final Future<T> task) {
-        if (task == null) {
-            return;
-        }
-
-        synchronized (checksInProgress) {
-            checksInProgress.remove(task);
-        }
+    public void asyncScanFiles(final List<VirtualFile> files) {
+        asyncScanFiles(files, ScanPriority.BACKGROUND);
     }
 
     @SuppressWarnings("FutureReturnValueIgnored")
-    public void asyncScanFiles(final List<VirtualFile> files) {
+    public void asyncScanFiles(final List<VirtualFile> files, @NotNull final ScanPriority priority) {
         LOG.info("Scanning current file(s).");
 
         if (files == null || files.isEmpty()) {
@@ -132,7 +131,22 @@ public final class MypyPlugin {
 
         final ScanFiles checkFiles = new ScanFiles(this, files);
         checkFiles.addListener(new UiFeedbackScannerListener(this));
-        runAsyncCheck(checkFiles);
+        runAsyncCheck(checkFiles, describeScope(files), priority);
+    }
+
+    /**
+     * Re-check files in the background, updating their results in the tool window without clearing the others.
+     *
+     * @param files    the files to check.
+     * @param priority the priority of the check, {@link ScanPriority#BACKGROUND} or below.
+     * @return the results of the check, completed as well if it is cancelled before it even started.
+     */
+    @NotNull
+    public CompletableFuture<Map<PsiFile, List<Problem>>> asyncRescanFiles(@NotNull final List<VirtualFile> files,
+                                                                           @NotNull final ScanPriority priority) {
+        final ScanFiles checkFiles = new ScanFiles(this, files);
+        checkFiles.addListener(new IncrementalScannerListener(this, checkFiles));
+        return runAsyncCheck(checkFiles, describeScope(files), priority);
     }
 
     public Map<PsiFile, List<Problem>> scanFiles(@NotNull final List<VirtualFile> files) {
@@ -141,45 +155,50 @@ public final class MypyPlugin {
         }
 
         try {
-            return whenFinished(runAsyncCheck(new ScanFiles(this, files))).get();
+            return whenFinished(runAsyncCheck(new ScanFiles(this, files), describeScope(files), ScanPriority.CHECKIN))
+                    .get();
         } catch (final Throwable e) {
             LOG.warn("ERROR scanning files", e);
             return Collections.emptyMap();
         }
     }
 
-    private Future<Map<PsiFile, List<Problem>>> runAsyncCheck(final ScanFiles checker) {
-        final Future<Map<PsiFile, List<Problem>>> checkFilesFuture =
-                checkInProgress(Async.executeOnPooledThread(checker));
-        checker.addListener(new ScanCompletionTracker(checkFilesFuture));
-        return checkFilesFuture;
+    /**
+     * Queue a scan in the scan scheduler, without tracking it as a check in progress, e.g. for the annotator.
+     *
+     * @param checker  the scan.
+     * @param priority the priority of the scan.
+     * @return the results of the scan. Cancelling it cancels the scan.
+     */
+    public Future<Map<PsiFile, List<Problem>>> submitScan(@NotNull final ScanFiles checker,
+                                                          @NotNull final ScanPriority priority) {
+        return scanScheduler.submit(checker, priority);
     }
 
-    private class ScanCompletionTracker implements ScannerListener {
-
-        private final Future<Map<PsiFile, List<Problem>>> future;
-
-        ScanCompletionTracker(final Future<Map<PsiFile, List<Problem>>> future) {
-            this.future = future;
-        }
-
-        @Override
-        public void scanStarting(final List<PsiFile> filesToScan) {
-        }
-
-        @Override
-        public void filesScanned(final int count) {
-        }
+    @SuppressWarnings("FutureReturnValueIgnored")
+    private CompletableFuture<Map<PsiFile, List<Problem>>> runAsyncCheck(final ScanFiles checker,
+                                                                         final String scope,
+                                                                         final ScanPriority priority) {
+        final ScanHandle handle = scanRegistry.register(scope, priority, checker);
+        final CompletableFuture<Map<PsiFile, List<Problem>>> checkFilesFuture =
+                scanScheduler.submit(checker, priority);
+        handle.setFuture(checkFilesFuture);
+        checkFilesFuture.whenComplete((results, error) -> {
+            scanRegistry.unregister(handle);
+            MypyIssueStore.getInstance(project).clearRestoredResults();
+        });
+        return checkFilesFuture;
+    }
 
-        @Override
-        public void scanCompletedSuccessfully(
-                final Map<PsiFile, List<Problem>> scanResults) {
-            checkComplete(future);
+    @NotNull
+    private static String describeScope(@NotNull final List<VirtualFile> files) {
+        if (files.isEmpty()) {
+            return "";
         }
-
-        @Override
-        public void scanFailedWithError(final MypyPluginException error) {
-            checkComplete(future);
+        String scope = files.get(0).getName();
+        if (files.size() > 1) {
+            scope += " +" + (files.size() - 1);
         }
+        return scope;
     }
 }
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.projectRoots.Sdk;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.leinardi.pycharm.mypy.checker.Problem;
+import com.leinardi.pycharm.mypy.mpapi.MypyRunner;
+import com.leinardi.pycharm.mypy.toolwindow.MypyToolWindowPanel;
+import com.leinardi.pycharm.mypy.util.ContentHashes;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.SwingUtilities;
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of the problems found by the annotator, so that files whose content, Mypy configuration and
+ * interpreter did not change since the last check are not checked again.
+ */
+@Service
+public final class MypyResultCache {
+    private static final Logger LOG = Logger.getInstance(MypyResultCache.class);
+    private static final int MAX_ENTRIES = 256;
+    private static final long MAX_BYTES = 16L * 1024 * 1024;
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+    private static final int PROBLEM_OVERHEAD_BYTES = 96;
+    private static final long STATISTICS_UPDATE_DELAY_MILLIS = 1000;
+
+    private final Project project;
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicBoolean statisticsUpdateScheduled = new AtomicBoolean();
+    private long sizeInBytes;
+
+    public MypyResultCache(@NotNull final Project project) {
+        this.project = project;
+    }
+
+    public static MypyResultCache getInstance(@NotNull final Project project) {
+        return project.getService(MypyResultCache.class);
+    }
+
+    /**
+     * Build the key identifying the current check of a file.
+     *
+     * @param psiFile the file to check.
+     * @return the key, or null if the file can't be cached.
+     */
+    @Nullable
+    public Key keyFor(@NotNull final PsiFile psiFile) {
+        MypyConfigService mypyConfigService = MypyConfigService.getInstance(project);
+        VirtualFile virtualFile = psiFile.getVirtualFile();
+        Sdk projectSdk = ProjectRootManager.getInstance(project).getProjectSdk();
+        if (mypyConfigService == null || virtualFile == null || projectSdk == null) {
+            return null;
+        }
+        long contentHash = ReadAction.compute(() -> ContentHashes.hash(psiFile.getViewProvider().getContents()));
+        String mypyPath = MypyRunner.getMypyPath(project);
+        return new Key(virtualFile.getPath(),
+                contentHash,
+                configFileHash(mypyConfigService.getMypyConfigFilePath()),
+                mypyConfigService.getMypyArguments(),
+                projectSdk.getHomePath(),
+                MypyRunner.getMypyVersion(project, mypyPath));
+    }
+
+    /**
+     * Get the problems previously found for a check.
+     *
+     * @param key the key of the check.
+     * @return the problems, or null if the check is not cached or its results are no longer valid.
+     */
+    @Nullable
+    public List<Problem> get(@NotNull final Key key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && !entry.problems.stream().allMatch(Problem::isValid)) {
+                remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        showStatistics();
+        return entry == null ? null : entry.problems;
+    }
+
+    public void put(@NotNull final Key key, @NotNull final List<Problem> problems) {
+        Entry entry = new Entry(problems);
+        synchronized (entries) {
+            remove(key);
+            entries.put(key, entry);
+            sizeInBytes += entry.sizeInBytes;
+            Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+            while ((entries.size() > MAX_ENTRIES || sizeInBytes > MAX_BYTES) && iterator.hasNext()) {
+                Map.Entry<Key, Entry> eldest = iterator.next();
+                if (eldest.getValue() != entry) {
+                    sizeInBytes -= eldest.getValue().sizeInBytes;
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            sizeInBytes = 0;
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private void remove(final Key key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            sizeInBytes -= removed.sizeInBytes;
+        }
+    }
+
+    private String configFileHash(final String mypyConfigFilePath) {
+        if (mypyConfigFilePath.isEmpty()) {
+            return "";
+        }
+        File configFile = new File(mypyConfigFilePath);
+        if (!configFile.isAbsolute()) {
+            configFile = new File(project.getBasePath(), mypyConfigFilePath);
+        }
+        return configFile.getPath() + File.pathSeparator + configFile.lastModified()
+                + File.pathSeparator + configFile.length();
+    }
+
+    /**
+     * Show the statistics in the tool window at most once per update delay, with the counters of the end of the delay.
+     */
+    @SuppressWarnings("FutureReturnValueIgnored")
+    private void showStatistics() {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Mypy result cache: " + hits.get() + " hits, " + misses.get() + " misses");
+        }
+        if (!statisticsUpdateScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        AppExecutorUtil.getAppScheduledExecutorService().schedule(() -> SwingUtilities.invokeLater(() -> {
+            statisticsUpdateScheduled.set(false);
+            final MypyToolWindowPanel toolWindowPanel = MypyToolWindowPanel.panelFor(project);
+            if (toolWindowPanel != null) {
+                toolWindowPanel.displayCacheStatistics(hits.get(), misses.get());
+            }
+        }), STATISTICS_UPDATE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Identifies a check: the file and its content, the Mypy configuration, interpreter and version.
+     */
+    public static final class Key {
+        private final String path;
+        private final long contentHash;
+        private final String configFileHash;
+        private final String mypyArguments;
+        private final String sdkHomePath;
+        private final String mypyVersion;
+
+        Key(final String path,
+            final long contentHash,
+            final String configFileHash,
+            final String mypyArguments,
+            final String sdkHomePath,
+            final String mypyVersion) {
+            this.path = path;
+            this.contentHash = contentHash;
+            this.configFileHash = configFileHash;
+            this.mypyArguments = mypyArguments;
+            this.sdkHomePath = sdkHomePath;
+            this.mypyVersion = mypyVersion;
+        }
+
+        @NotNull
+        public String getPath() {
+            return path;
+        }
+
+        public long getContentHash() {
+            return contentHash;
+        }
+
+        /**
+         * @return a string identifying the Mypy configuration, interpreter and version of the check.
+         */
+        @NotNull
+        public String getConfiguration() {
+            return String.join("\n", configFileHash, mypyArguments, String.valueOf(sdkHomePath), mypyVersion);
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return contentHash == key.contentHash
+                    && path.equals(key.path)
+                    && configFileHash.equals(key.configFileHash)
+                    && mypyArguments.equals(key.mypyArguments)
+                    && Objects.equals(sdkHomePath, key.sdkHomePath)
+                    && mypyVersion.equals(key.mypyVersion);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, contentHash, configFileHash, mypyArguments, sdkHomePath, mypyVersion);
+        }
+    }
+
+    private static final class Entry {
+        private final List<Problem> problems;
+        private final long sizeInBytes;
+
+        Entry(final List<Problem> problems) {
+            this.problems = problems;
+            long size = ENTRY_OVERHEAD_BYTES;
+            for (Problem problem : problems) {
+                size += PROBLEM_OVERHEAD_BYTES + 2L * problem.getMessage().length();
+            }
+            this.sizeInBytes = size;
+        }
+    }
+}
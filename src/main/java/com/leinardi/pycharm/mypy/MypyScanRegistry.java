@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy;
+
+import com.leinardi.pycharm.mypy.checker.ScanFiles;
+import com.leinardi.pycharm.mypy.checker.ScanHandle;
+import com.leinardi.pycharm.mypy.checker.ScanPriority;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The scans in progress, readable without locking, as the actions query it on each update of the toolbar.
+ */
+final class MypyScanRegistry {
+    private final Map<Long, ScanHandle> scans = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicInteger scanCount = new AtomicInteger();
+
+    @NotNull
+    ScanHandle register(@NotNull final String scope,
+                        @NotNull final ScanPriority priority,
+                        @NotNull final ScanFiles scanFiles) {
+        ScanHandle handle = new ScanHandle(nextId.incrementAndGet(), scope, priority, scanFiles);
+        scans.put(handle.getId(), handle);
+        scanCount.incrementAndGet();
+        return handle;
+    }
+
+    void unregister(@NotNull final ScanHandle handle) {
+        if (scans.remove(handle.getId()) != null) {
+            scanCount.decrementAndGet();
+        }
+    }
+
+    boolean isScanInProgress() {
+        return scanCount.get() > 0;
+    }
+
+    /**
+     * @return the scans in progress, the oldest first.
+     */
+    @NotNull
+    List<ScanHandle> getScans() {
+        List<ScanHandle> handles = new ArrayList<>(scans.values());
+        handles.sort(Comparator.comparingLong(ScanHandle::getId));
+        return handles;
+    }
+
+    /**
+     * @return the number of Mypy processes stopped, completed once all of them exited.
+     */
+    @NotNull
+    CompletableFuture<Integer> cancelAll() {
+        CompletableFuture<Integer> stopped = CompletableFuture.completedFuture(0);
+        for (ScanHandle handle : scans.values()) {
+            stopped = stopped.thenCombine(handle.cancel(), Integer::sum);
+        }
+        return stopped;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.leinardi.pycharm.mypy.checker.Problem;
+import com.leinardi.pycharm.mypy.checker.ScanFiles;
+import com.leinardi.pycharm.mypy.checker.ScanPriority;
+import com.leinardi.pycharm.mypy.toolwindow.MypyToolWindowPanel;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs the scans by priority, with a bounded number of them running at the same time.
+ * <p>
+ * When all the slots are taken, a queued scan preempts a running background scan of lower priority: its Mypy
+ * processes are destroyed and it is queued again, to be run from the start once a slot is free. A scan is preempted
+ * at most {@link #MAX_PREEMPTIONS} times, then it runs to the end, so that a long scan cannot starve.
+ */
+final class MypyScanScheduler {
+    private static final Logger LOG = Logger.getInstance(MypyScanScheduler.class);
+    private static final int MAX_PREEMPTIONS = 3;
+
+    private final Project project;
+    private final PriorityQueue<Task> queue = new PriorityQueue<>(
+            Comparator.comparing((Task task) -> task.priority).thenComparingLong(task -> task.sequence));
+    private final List<Task> running = new ArrayList<>();
+    private long sequence;
+
+    MypyScanScheduler(@NotNull final Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Queue a scan.
+     *
+     * @param scanFiles the scan.
+     * @param priority  its priority.
+     * @return the results of the scan. Cancelling it cancels the scan.
+     */
+    @NotNull
+    CompletableFuture<Map<PsiFile, List<Problem>>> submit(@NotNull final ScanFiles scanFiles,
+                                                          @NotNull final ScanPriority priority) {
+        scanFiles.setTimeoutSeconds(getTimeoutSeconds(priority));
+        final Task task;
+        synchronized (this) {
+            task = new Task(scanFiles, priority, sequence++);
+            queue.add(task);
+            preemptFor(task);
+        }
+        dispatch();
+        return task;
+    }
+
+    private void dispatch() {
+        final List<Task> tasksToStart = new ArrayList<>();
+        final int runningCount;
+        final int queueDepth;
+        synchronized (this) {
+            int maxConcurrentScans = getMaxConcurrentScans();
+            while (!queue.isEmpty() && running.size() < maxConcurrentScans) {
+                Task task = queue.poll();
+                if (!task.isDone()) {
+                    running.add(task);
+                    tasksToStart.add(task);
+                }
+            }
+            runningCount = running.size();
+            queueDepth = queue.size();
+        }
+        tasksToStart.forEach(AppExecutorUtil.getAppExecutorService()::execute);
+        SwingUtilities.invokeLater(() -> {
+            final MypyToolWindowPanel toolWindowPanel = MypyToolWindowPanel.panelFor(project);
+            if (toolWindowPanel != null) {
+                toolWindowPanel.displayScanQueue(runningCount, queueDepth);
+            }
+        });
+    }
+
+    /**
+     * Preempt the running background scan of lowest priority, if a slot is needed for a scan of higher priority.
+     * The scans of the dependents of changed files are background scans as well. The scans already preempted
+     * {@link #MAX_PREEMPTIONS} times are not preempted again.
+     */
+    private void preemptFor(final Task task) {
+        if (running.size() < getMaxConcurrentScans()) {
+            return;
+        }
+        Task victim = null;
+        for (Task runningTask : running) {
+            if (runningTask.priority.compareTo(ScanPriority.BACKGROUND) >= 0
+                    && runningTask.priority.compareTo(task.priority) > 0
+                    && !runningTask.scanFiles.isPreempted()
+                    && runningTask.preemptions < MAX_PREEMPTIONS
+                    && (victim == null || runningTask.sequence > victim.sequence)) {
+                victim = runningTask;
+            }
+        }
+        if (victim != null) {
+            LOG.debug("Preempting a background Mypy scan for a " + task.priority + " scan");
+            victim.preemptions++;
+            victim.scanFiles.preempt();
+        }
+    }
+
+    private void finished(final Task task, final boolean requeue) {
+        synchronized (this) {
+            running.remove(task);
+            if (requeue) {
+                queue.add(task);
+            }
+        }
+        dispatch();
+    }
+
+    private void dequeue(final Task task) {
+        boolean removed;
+        synchronized (this) {
+            removed = queue.remove(task);
+        }
+        if (removed) {
+            dispatch();
+        }
+    }
+
+    private int getMaxConcurrentScans() {
+        MypyConfigService mypyConfigService = MypyConfigService.getInstance(project);
+        return mypyConfigService == null ? 1 : Math.max(1, mypyConfigService.getMaxConcurrentScans());
+    }
+
+    /**
+     * The editor scans are the ones of the annotator and of the current file action, the background ones are the
+     * project, module and incremental scans.
+     */
+    private int getTimeoutSeconds(final ScanPriority priority) {
+        MypyConfigService mypyConfigService = MypyConfigService.getInstance(project);
+        if (mypyConfigService == null) {
+            return 0;
+        }
+        switch (priority) {
+            case ACTIVE_EDITOR:
+            case VISIBLE_EDITOR:
+                return mypyConfigService.getAnnotatorScanTimeoutSeconds();
+            case CHECKIN:
+                return mypyConfigService.getCheckinScanTimeoutSeconds();
+            default:
+                return mypyConfigService.getProjectScanTimeoutSeconds();
+        }
+    }
+
+    private final class Task extends CompletableFuture<Map<PsiFile, List<Problem>>> implements Runnable {
+        private final ScanFiles scanFiles;
+        private final ScanPriority priority;
+        private final long sequence;
+        // guarded by the scheduler
+        private int preemptions;
+
+        Task(final ScanFiles scanFiles, final ScanPriority priority, final long sequence) {
+            this.scanFiles = scanFiles;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            Map<PsiFile, List<Problem>> results = Collections.emptyMap();
+            boolean requeue = false;
+            try {
+                if (!isDone() && !scanFiles.isCancelled()) {
+                    results = scanFiles.call();
+                    // a scan preempted once its processes were done completed anyway
+                    requeue = scanFiles.isPreempted() && !scanFiles.isCompleted() && !isDone();
+                    if (scanFiles.isPreempted()) {
+                        scanFiles.resetPreemption();
+                    }
+                }
+            } finally {
+                if (!requeue) {
+                    complete(results);
+                }
+                finished(this, requeue);
+            }
+        }
+
+        @SuppressWarnings("FutureReturnValueIgnored")
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            scanFiles.cancel();
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            dequeue(this);
+            return cancelled;
+        }
+    }
+}
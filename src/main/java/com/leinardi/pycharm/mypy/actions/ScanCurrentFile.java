@@ -25,6 +25,7 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.wm.ToolWindow;
 import com.leinardi.pycharm.mypy.MypyPlugin;
+import com.leinardi.pycharm.mypy.checker.ScanPriority;
 import com.leinardi.pycharm.mypy.util.FileTypes;
 import org.jetbrains.annotations.NotNull;
 
@@ -49,7 +50,7 @@ public class ScanCurrentFile extends BaseAction {
                         final VirtualFile selectedFile = getSelectedFile(project);
                         if (selectedFile != null) {
                             project.getService(MypyPlugin.class).asyncScanFiles(
-                                    Collections.singletonList(selectedFile));
+                                    Collections.singletonList(selectedFile), ScanPriority.ACTIVE_EDITOR);
                         }
 
                     } catch (Throwable e) {
@@ -19,9 +19,13 @@ package com.leinardi.pycharm.mypy.actions;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.Presentation;
 import com.intellij.openapi.wm.ToolWindow;
+import com.leinardi.pycharm.mypy.MypyBundle;
 import com.leinardi.pycharm.mypy.MypyPlugin;
 import org.jetbrains.annotations.NotNull;
 
+import javax.swing.SwingUtilities;
+
+import static com.leinardi.pycharm.mypy.actions.ToolWindowAccess.actOnToolWindowPanel;
 import static com.leinardi.pycharm.mypy.actions.ToolWindowAccess.toolWindow;
 
 /**
@@ -29,6 +33,7 @@ import static com.leinardi.pycharm.mypy.actions.ToolWindowAccess.toolWindow;
  */
 public class StopCheck extends BaseAction {
 
+    @SuppressWarnings("FutureReturnValueIgnored")
     @Override
     public void actionPerformed(final @NotNull AnActionEvent event) {
         project(event).ifPresent(project -> {
@@ -41,9 +46,10 @@ public class StopCheck extends BaseAction {
                     if (mypyPlugin == null) {
                         throw new IllegalStateException("Couldn't get mypy plugin");
                     }
-                    mypyPlugin.stopChecks();
-
                     setProgressText(toolWindow, "plugin.status.aborted");
+                    mypyPlugin.stopChecks().thenAccept(stopped -> SwingUtilities.invokeLater(() ->
+                            actOnToolWindowPanel(toolWindow, panel -> panel.setProgressText(
+                                    MypyBundle.message("plugin.status.aborted.processes", stopped)))));
                 });
 
             } catch (Throwable e) {
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.checker;
+
+import com.intellij.psi.PsiFile;
+import com.leinardi.pycharm.mypy.MypyPlugin;
+import com.leinardi.pycharm.mypy.exception.MypyPluginException;
+import com.leinardi.pycharm.mypy.toolwindow.MypyToolWindowPanel;
+
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the results of a background re-check into the results displayed by the tool window, without clearing them.
+ */
+public class IncrementalScannerListener implements ScannerListener {
+    private final MypyPlugin plugin;
+    private final ScanFiles scanFiles;
+    private List<PsiFile> scannedFiles = new ArrayList<>();
+
+    public IncrementalScannerListener(final MypyPlugin plugin, final ScanFiles scanFiles) {
+        this.plugin = plugin;
+        this.scanFiles = scanFiles;
+    }
+
+    @Override
+    public void scanStarting(final List<PsiFile> filesToScan) {
+        scannedFiles = new ArrayList<>(filesToScan);
+    }
+
+    @Override
+    public void filesScanned(final int count) {
+    }
+
+    @Override
+    public void scanCompletedSuccessfully(final Map<PsiFile, List<Problem>> scanResults) {
+        if (!scanFiles.isCompleted()) {
+            // cancelled, the displayed results are still the best known ones
+            return;
+        }
+        // the files without problems are not part of the results, but their previous problems must be removed
+        final Map<PsiFile, List<Problem>> mergedResults = new HashMap<>();
+        if (!scanFiles.isTimedOut()) {
+            // after a timeout, a file without problems may just not have been checked yet
+            for (final PsiFile file : scannedFiles) {
+                mergedResults.put(file, new ArrayList<>());
+            }
+        }
+        mergedResults.putAll(scanResults);
+        SwingUtilities.invokeLater(() -> {
+            final MypyToolWindowPanel toolWindowPanel = MypyToolWindowPanel.panelFor(plugin.getProject());
+            if (toolWindowPanel != null) {
+                toolWindowPanel.mergeResults(mergedResults);
+            }
+        });
+    }
+
+    @Override
+    public void scanFailedWithError(final MypyPluginException error) {
+        MypyPlugin.processErrorAndLog("Incremental scan", error);
+    }
+}
@@ -19,52 +19,137 @@ package com.leinardi.pycharm.mypy.checker;
 import com.intellij.lang.annotation.AnnotationBuilder;
 import com.intellij.lang.annotation.AnnotationHolder;
 import com.intellij.lang.annotation.HighlightSeverity;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.SmartPsiElementPointer;
 import com.leinardi.pycharm.mypy.MypyBundle;
 import com.leinardi.pycharm.mypy.intentions.TypeIgnoreIntention;
+import com.leinardi.pycharm.mypy.mpapi.ProcessResultsThread;
 import com.leinardi.pycharm.mypy.mpapi.SeverityLevel;
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+/**
+ * A problem found by Mypy.
+ * <p>
+ * Only a pointer to the file and the offset of the problem are kept: the PSI element it targets is looked up when
+ * the problem is annotated, as holding on to the elements would keep the syntax trees of all the checked files in
+ * memory. The offset only holds for the version of the file that has been checked: once the file has been modified,
+ * the line and column reported by Mypy are mapped to the current text instead, so that the problem follows the
+ * edits of the lines before it until the file is checked again.
+ */
 public class Problem {
-    private final PsiElement target;
+    private final SmartPsiElementPointer<PsiFile> file;
+    private final int offset;
+    private final long modificationStamp;
     private final SeverityLevel severityLevel;
     private final int line;
     private final int column;
+    private final int endLine;
+    private final int endColumn;
     private final String message;
     private final boolean afterEndOfLine;
     private final boolean suppressErrors;
 
-    public Problem(@NotNull final PsiElement target,
+    /**
+     * @param file   the file of the problem, usually shared by all the problems of the file.
+     * @param offset            the offset of the problem in the text of the file that has been checked.
+     * @param modificationStamp the modification stamp of the PSI file the offset has been computed for.
+     * @param endLine           the line where the problem ends, or -1 if not reported by Mypy.
+     * @param endColumn         the 0-based column where the problem ends (exclusive), or -1 if not reported.
+     */
+    public Problem(@NotNull final SmartPsiElementPointer<PsiFile> file,
+                   final int offset,
+                   final long modificationStamp,
                    @NotNull final String message,
                    @NotNull final SeverityLevel severityLevel,
                    final int line,
                    final int column,
+                   final int endLine,
+                   final int endColumn,
                    final boolean afterEndOfLine,
                    final boolean suppressErrors) {
-        this.target = target;
+        this.file = file;
+        this.offset = offset;
+        this.modificationStamp = modificationStamp;
         this.message = message;
         this.severityLevel = severityLevel;
         this.line = line;
         this.column = column;
+        this.endLine = endLine;
+        this.endColumn = endColumn;
         this.afterEndOfLine = afterEndOfLine;
         this.suppressErrors = suppressErrors;
     }
 
     public void createAnnotation(@NotNull AnnotationHolder holder, @NotNull HighlightSeverity severity) {
+        PsiElement target = findTarget();
+        if (target == null) {
+            return;
+        }
         String message = MypyBundle.message("inspection.message", getMessage());
         AnnotationBuilder annotation = holder
                 .newAnnotation(severity, message)
-                .range(target.getTextRange())
+                .range(findRange(target))
                 .withFix(new TypeIgnoreIntention());
-        if (isAfterEndOfLine()) {
+        if (isAfterEndOfLine() && !(target instanceof PsiFile)) {
             annotation = annotation.afterEndOfLine();
         }
         annotation.create();
     }
 
+    /**
+     * Find the element targeted by the problem, or the whole file when there is no element at its offset. Must be
+     * called in a read action.
+     *
+     * @return the element, or null if the file is no longer valid.
+     */
+    @Nullable
+    public PsiElement findTarget() {
+        PsiFile psiFile = file.getElement();
+        if (psiFile == null) {
+            return null;
+        }
+        PsiElement element = psiFile.findElementAt(findOffset(psiFile));
+        return element != null ? element : psiFile;
+    }
+
+    /**
+     * The range reported by Mypy, if it reported where the problem ends, otherwise the range of the target.
+     */
+    private TextRange findRange(final PsiElement target) {
+        PsiFile psiFile = target.getContainingFile();
+        if (endLine <= 0 || endColumn < 0 || afterEndOfLine || psiFile == null) {
+            return target.getTextRange();
+        }
+        int startOffset = findOffset(psiFile);
+        int endOffset = ProcessResultsThread.findOffset(psiFile, endLine, endColumn);
+        return endOffset > startOffset ? new TextRange(startOffset, endOffset) : target.getTextRange();
+    }
+
+    private int findOffset(final PsiFile psiFile) {
+        return psiFile.getModificationStamp() == modificationStamp
+                ? offset
+                : ProcessResultsThread.findOffset(psiFile, line, column);
+    }
+
+    SmartPsiElementPointer<PsiFile> getFilePointer() {
+        return file;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public long getModificationStamp() {
+        return modificationStamp;
+    }
+
     public SeverityLevel severityLevel() {
         return severityLevel;
     }
@@ -77,6 +162,14 @@ public class Problem {
         return column;
     }
 
+    public int endLine() {
+        return endLine;
+    }
+
+    public int endColumn() {
+        return endColumn;
+    }
+
     public String getMessage() {
         return message;
     }
@@ -89,14 +182,25 @@ public class Problem {
         return suppressErrors;
     }
 
+    /**
+     * @return false if the file is no longer valid, e.g. because it has been deleted.
+     */
+    public boolean isValid() {
+        return ReadAction.compute(() -> file.getElement() != null);
+    }
+
     @Override
     public String toString() {
         return new ToStringBuilder(this)
-                .append("target", target)
+                .append("file", file.getVirtualFile())
+                .append("offset", offset)
+                .append("modificationStamp", modificationStamp)
                 .append("message", message)
                 .append("severityLevel", severityLevel)
                 .append("line", line)
                 .append("column", column)
+                .append("endLine", endLine)
+                .append("endColumn", endColumn)
                 .append("afterEndOfLine", afterEndOfLine)
                 .append("suppressErrors", suppressErrors)
                 .toString();
@@ -105,11 +209,15 @@ public class Problem {
     @Override
     public int hashCode() {
         return new HashCodeBuilder()
-                .append(target)
+                .append(file.getVirtualFile())
+                .append(offset)
+                .append(modificationStamp)
                 .append(message)
                 .append(severityLevel)
                 .append(line)
                 .append(column)
+                .append(endLine)
+                .append(endColumn)
                 .append(afterEndOfLine)
                 .append(suppressErrors)
                 .toHashCode();
@@ -125,11 +233,15 @@ public class Problem {
         }
         Problem rhs = ((Problem) other);
         return new EqualsBuilder()
-                .append(target, rhs.target)
+                .append(file.getVirtualFile(), rhs.file.getVirtualFile())
+                .append(offset, rhs.offset)
+                .append(modificationStamp, rhs.modificationStamp)
                 .append(message, rhs.message)
                 .append(severityLevel, rhs.severityLevel)
                 .append(line, rhs.line)
                 .append(column, rhs.column)
+                .append(endLine, rhs.endLine)
+                .append(endColumn, rhs.endColumn)
                 .append(afterEndOfLine, rhs.afterEndOfLine)
                 .append(suppressErrors, rhs.suppressErrors)
                 .isEquals();
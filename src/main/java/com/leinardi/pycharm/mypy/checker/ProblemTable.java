@@ -0,0 +1,240 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.checker;
+
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.leinardi.pycharm.mypy.mpapi.SeverityLevel;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Columnar store of the problems of a scan: one primitive array per field and a table of the distinct messages, as
+ * a project scan can report hundreds of thousands of problems, most of them sharing a handful of messages.
+ * <p>
+ * The problems of a file are stored in consecutive rows and read through a list view, which creates the
+ * {@link Problem} objects on access. Rows are only ever appended, so the views stay valid while the table grows.
+ */
+public final class ProblemTable {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int AFTER_END_OF_LINE = 1;
+    private static final int SUPPRESS_ERRORS = 2;
+    private static final SeverityLevel[] SEVERITY_LEVELS = SeverityLevel.values();
+
+    private static final int ARRAY_HEADER_BYTES = 16;
+    private static final int STRING_OVERHEAD_BYTES = ARRAY_HEADER_BYTES + 24;
+    private static final int FILE_OVERHEAD_BYTES = 80;
+    private static final int MESSAGE_INDEX_ENTRY_BYTES = 48;
+    /**
+     * A {@link Problem} object and its slot in a list.
+     */
+    private static final int PROBLEM_OBJECT_BYTES = 56;
+
+    private final List<SmartPsiElementPointer<PsiFile>> filePointers = new ArrayList<>();
+    private final List<Long> fileModificationStamps = new ArrayList<>();
+    private final Map<PsiFile, List<Problem>> fileProblems = new LinkedHashMap<>();
+    private final List<String> messages = new ArrayList<>();
+    private Map<String, Integer> messageIndex;
+    private long messageChars;
+
+    private int[] lines = new int[INITIAL_CAPACITY];
+    private int[] columns = new int[INITIAL_CAPACITY];
+    private int[] endLines = new int[INITIAL_CAPACITY];
+    private int[] endColumns = new int[INITIAL_CAPACITY];
+    private int[] offsets = new int[INITIAL_CAPACITY];
+    private int[] messageIds = new int[INITIAL_CAPACITY];
+    private byte[] severities = new byte[INITIAL_CAPACITY];
+    private byte[] flags = new byte[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Store the problems of a file, replacing the ones stored before for it. The problems of a file are expected to
+     * share the same file pointer and modification stamp, which are stored once per file.
+     *
+     * @param psiFile  the file.
+     * @param problems its problems, possibly none.
+     * @return the view of the stored problems.
+     */
+    @NotNull
+    public synchronized List<Problem> add(@NotNull final PsiFile psiFile, @NotNull final List<Problem> problems) {
+        int fileId = filePointers.size();
+        filePointers.add(problems.isEmpty() ? null : problems.get(0).getFilePointer());
+        fileModificationStamps.add(problems.isEmpty() ? 0 : problems.get(0).getModificationStamp());
+        ensureCapacity(size + problems.size());
+        int firstRow = size;
+        for (Problem problem : problems) {
+            lines[size] = problem.line();
+            columns[size] = problem.column();
+            endLines[size] = problem.endLine();
+            endColumns[size] = problem.endColumn();
+            offsets[size] = problem.getOffset();
+            messageIds[size] = messageIdOf(problem.getMessage());
+            severities[size] = (byte) problem.severityLevel().ordinal();
+            flags[size] = (byte) ((problem.isAfterEndOfLine() ? AFTER_END_OF_LINE : 0)
+                    | (problem.isSuppressErrors() ? SUPPRESS_ERRORS : 0));
+            size++;
+        }
+        List<Problem> view = problems.isEmpty()
+                ? Collections.emptyList()
+                : new FileProblems(fileId, firstRow, problems.size());
+        fileProblems.put(psiFile, view);
+        return view;
+    }
+
+    /**
+     * @return a read-only view of the problems by file, in the order the files have been added.
+     */
+    @NotNull
+    public synchronized Map<PsiFile, List<Problem>> asMap() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(fileProblems));
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int getMessageCount() {
+        return messages.size();
+    }
+
+    /**
+     * Release the spare capacity, once no more problems are expected.
+     */
+    public synchronized void trimToSize() {
+        if (lines.length != size) {
+            lines = Arrays.copyOf(lines, size);
+            columns = Arrays.copyOf(columns, size);
+            endLines = Arrays.copyOf(endLines, size);
+            endColumns = Arrays.copyOf(endColumns, size);
+            offsets = Arrays.copyOf(offsets, size);
+            messageIds = Arrays.copyOf(messageIds, size);
+            severities = Arrays.copyOf(severities, size);
+            flags = Arrays.copyOf(flags, size);
+        }
+        // rebuilt if more problems are added
+        messageIndex = null;
+    }
+
+    /**
+     * @return the estimated heap used by the table.
+     */
+    public synchronized long estimateSizeInBytes() {
+        long bytes = 8L * ARRAY_HEADER_BYTES + (long) lines.length * (6 * Integer.BYTES + 2);
+        bytes += (long) messages.size() * STRING_OVERHEAD_BYTES + 2 * messageChars;
+        bytes += (long) filePointers.size() * FILE_OVERHEAD_BYTES;
+        if (messageIndex != null) {
+            bytes += (long) messageIndex.size() * MESSAGE_INDEX_ENTRY_BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the estimated heap the same problems would use as lists of {@link Problem} objects, each with its own
+     * message.
+     */
+    public synchronized long estimateObjectSizeInBytes() {
+        long bytes = (long) filePointers.size() * FILE_OVERHEAD_BYTES;
+        for (int row = 0; row < size; row++) {
+            bytes += PROBLEM_OBJECT_BYTES + STRING_OVERHEAD_BYTES + 2L * messages.get(messageIds[row]).length();
+        }
+        return bytes;
+    }
+
+    private int messageIdOf(final String message) {
+        if (messageIndex == null) {
+            messageIndex = new HashMap<>();
+            for (int i = 0; i < messages.size(); i++) {
+                messageIndex.put(messages.get(i), i);
+            }
+        }
+        Integer messageId = messageIndex.get(message);
+        if (messageId == null) {
+            messageId = messages.size();
+            messages.add(message);
+            messageIndex.put(message, messageId);
+            messageChars += message.length();
+        }
+        return messageId;
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity <= lines.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, lines.length + (lines.length >> 1));
+        lines = Arrays.copyOf(lines, newCapacity);
+        columns = Arrays.copyOf(columns, newCapacity);
+        endLines = Arrays.copyOf(endLines, newCapacity);
+        endColumns = Arrays.copyOf(endColumns, newCapacity);
+        offsets = Arrays.copyOf(offsets, newCapacity);
+        messageIds = Arrays.copyOf(messageIds, newCapacity);
+        severities = Arrays.copyOf(severities, newCapacity);
+        flags = Arrays.copyOf(flags, newCapacity);
+    }
+
+    private synchronized Problem problemAt(final int fileId, final int row) {
+        return new Problem(
+                filePointers.get(fileId),
+                offsets[row],
+                fileModificationStamps.get(fileId),
+                messages.get(messageIds[row]),
+                SEVERITY_LEVELS[severities[row]],
+                lines[row],
+                columns[row],
+                endLines[row],
+                endColumns[row],
+                (flags[row] & AFTER_END_OF_LINE) != 0,
+                (flags[row] & SUPPRESS_ERRORS) != 0);
+    }
+
+    /**
+     * The problems of a file, a range of consecutive rows.
+     */
+    private final class FileProblems extends AbstractList<Problem> implements RandomAccess {
+        private final int fileId;
+        private final int firstRow;
+        private final int size;
+
+        FileProblems(final int fileId, final int firstRow, final int size) {
+            this.fileId = fileId;
+            this.firstRow = firstRow;
+            this.size = size;
+        }
+
+        @Override
+        public Problem get(final int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+            }
+            return problemAt(fileId, firstRow + index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -23,11 +23,18 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileVisitor;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.leinardi.pycharm.mypy.MypyIssueStore;
+import com.leinardi.pycharm.mypy.MypyBundle;
 import com.leinardi.pycharm.mypy.MypyPlugin;
+import com.leinardi.pycharm.mypy.MypyResultCache;
 import com.leinardi.pycharm.mypy.exception.MypyPluginException;
+import com.leinardi.pycharm.mypy.exception.MypyTimeoutException;
 import com.leinardi.pycharm.mypy.mpapi.Issue;
 import com.leinardi.pycharm.mypy.mpapi.MypyRunner;
 import com.leinardi.pycharm.mypy.mpapi.ProcessResultsThread;
+import com.leinardi.pycharm.mypy.mpapi.ProcessTracker;
+import com.leinardi.pycharm.mypy.mpapi.ProcessTrees;
 import com.leinardi.pycharm.mypy.util.Notifications;
 import org.jetbrains.annotations.NotNull;
 
@@ -39,16 +46,27 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 
+import static java.util.Collections.emptyList;
 import static java.util.Collections.emptyMap;
 
 public class ScanFiles implements Callable<Map<PsiFile, List<Problem>>> {
 
     private static final Logger LOG = Logger.getInstance(ScanFiles.class);
+    private static final int RESULT_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private static final int MEMORY_REPORT_MIN_PROBLEMS = 1000;
 
     private final List<PsiFile> files;
     private final Set<ScannerListener> listeners = new HashSet<>();
     private final MypyPlugin plugin;
+    private volatile RunningProcesses runningProcesses = new RunningProcesses();
+    private volatile boolean completed;
+    private volatile boolean cancelled;
+    private volatile boolean preempted;
+    private volatile boolean timedOut;
+    private volatile int timeoutSeconds;
 
     public ScanFiles(@NotNull final MypyPlugin mypyPlugin,
                      @NotNull final List<VirtualFile> virtualFiles) {
@@ -70,8 +88,15 @@ public class ScanFiles implements Callable<Map<PsiFile, List<Problem>>> {
     public final Map<PsiFile, List<Problem>> call() {
         try {
             fireCheckStarting(files);
-            return scanCompletedSuccessfully(checkFiles(new HashSet<>(files)));
+            Map<PsiFile, List<Problem>> filesToProblems = checkFiles(new HashSet<>(files));
+            completed = true;
+            return scanCompletedSuccessfully(filesToProblems);
         } catch (final InterruptedIOException | InterruptedException e) {
+            if (preempted) {
+                // the scan is going to be run again, the listeners are notified by that run
+                LOG.debug("Scan preempted", e);
+                return emptyMap();
+            }
             LOG.debug("Scan cancelled by PyCharm", e);
             return scanCompletedSuccessfully(emptyMap());
         } catch (final MypyPluginException e) {
@@ -105,14 +130,92 @@ public class ScanFiles implements Callable<Map<PsiFile, List<Problem>>> {
     private Map<PsiFile, List<Problem>> scan(final List<ScannableFile> filesToScan)
             throws InterruptedIOException, InterruptedException {
         Map<String, PsiFile> fileNamesToPsiFiles = mapFilesToElements(filesToScan);
-        List<Issue> errors = MypyRunner.scan(plugin.getProject(), fileNamesToPsiFiles.keySet());
+        Map<String, String> shadowFiles = new HashMap<>();
+        Map<String, String> shadowFilesToFileNames = new HashMap<>();
+        for (ScannableFile scannableFile : filesToScan) {
+            if (scannableFile.getShadowFile() != null) {
+                String shadowFilePath = scannableFile.getShadowFile().getAbsolutePath();
+                shadowFiles.put(scannableFile.getAbsolutePath(), shadowFilePath);
+                shadowFilesToFileNames.put(shadowFilePath, scannableFile.getAbsolutePath());
+            }
+        }
+        Map<PsiFile, MypyResultCache.Key> storeKeys = storeKeysFor(filesToScan);
+        List<Issue> errors;
+        try {
+            errors = MypyRunner.scan(plugin.getProject(), fileNamesToPsiFiles.keySet(), shadowFiles,
+                    runningProcesses, timeoutSeconds);
+        } catch (MypyTimeoutException e) {
+            LOG.warn("Mypy timed out, keeping the " + e.getPartialIssues().size() + " issues reported until then");
+            timedOut = true;
+            errors = markPartial(e.getPartialIssues());
+            Notifications.showScanTimeout(plugin.getProject(), timeoutSeconds, fileNamesToPsiFiles.keySet());
+        }
         String baseDir = plugin.getProject().getBasePath();
-        int tabWidth = 4;
+        int tabWidth = ProcessResultsThread.DEFAULT_TAB_WIDTH;
         final ProcessResultsThread findThread = new ProcessResultsThread(false, tabWidth, baseDir,
-                errors, fileNamesToPsiFiles);
+                errors, fileNamesToPsiFiles, shadowFilesToFileNames);
 
-        ReadAction.run(findThread);
-        return findThread.getProblems();
+        ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Mypy results",
+                RESULT_THREADS);
+        try {
+            findThread.runInParallel(executor, () -> cancelled || preempted, this::fireFileScanned);
+        } finally {
+            executor.shutdownNow();
+        }
+        Map<PsiFile, List<Problem>> problems = findThread.getProblems();
+        reportMemoryUse(findThread.getProblemTable());
+        if (!timedOut) {
+            store(storeKeys, problems);
+        }
+        return problems;
+    }
+
+    private static void reportMemoryUse(final ProblemTable problemTable) {
+        int size = problemTable.size();
+        if (size >= MEMORY_REPORT_MIN_PROBLEMS || (size > 0 && LOG.isDebugEnabled())) {
+            LOG.info("Mypy results: " + size + " problems with " + problemTable.getMessageCount()
+                    + " distinct messages, " + problemTable.estimateSizeInBytes() / size + " bytes per problem ("
+                    + problemTable.estimateObjectSizeInBytes() / size + " bytes as objects)");
+        }
+    }
+
+    private static List<Issue> markPartial(final List<Issue> issues) {
+        List<Issue> partialIssues = new ArrayList<>(issues.size());
+        for (Issue issue : issues) {
+            partialIssues.add(new Issue(issue.getPath(), issue.getLine(), issue.getColumn(), issue.getSeverityLevel(),
+                    MypyBundle.message("plugin.results.partial", issue.getMessage()), issue.getCode(),
+                    issue.getEndLine(), issue.getEndColumn()));
+        }
+        return partialIssues;
+    }
+
+    /**
+     * The keys are computed before the scan, so that the stored issues match the content that has been checked.
+     */
+    private Map<PsiFile, MypyResultCache.Key> storeKeysFor(final List<ScannableFile> filesToScan) {
+        MypyResultCache resultCache = MypyResultCache.getInstance(plugin.getProject());
+        Map<PsiFile, MypyResultCache.Key> keys = new HashMap<>();
+        for (ScannableFile scannableFile : filesToScan) {
+            MypyResultCache.Key key = resultCache.keyFor(scannableFile.getPsiFile());
+            if (key != null) {
+                keys.put(scannableFile.getPsiFile(), key);
+            }
+        }
+        return keys;
+    }
+
+    private void store(final Map<PsiFile, MypyResultCache.Key> storeKeys,
+                       final Map<PsiFile, List<Problem>> filesToProblems) {
+        Map<MypyResultCache.Key, List<Issue>> results = new HashMap<>();
+        storeKeys.forEach((psiFile, key) -> {
+            List<Issue> issues = new ArrayList<>();
+            for (Problem problem : filesToProblems.getOrDefault(psiFile, emptyList())) {
+                issues.add(new Issue(key.getPath(), problem.line(), problem.column(), problem.severityLevel(),
+                        problem.getMessage(), null, problem.endLine(), problem.endColumn()));
+            }
+            results.put(key, issues);
+        });
+        MypyIssueStore.getInstance(plugin.getProject()).put(results);
     }
 
     private Map<PsiFile, List<Problem>> scanFailedWithError(final MypyPluginException e) {
@@ -127,6 +230,81 @@ public class ScanFiles implements Callable<Map<PsiFile, List<Problem>>> {
         return filesToProblems;
     }
 
+    /**
+     * @return true if Mypy has been stopped by the timeout of the scan, in which case the results are partial.
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * @param timeoutSeconds how long each Mypy process of the scan may run before being stopped, or 0 for no limit.
+     */
+    public void setTimeoutSeconds(final int timeoutSeconds) {
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    /**
+     * @return true if the scan ran to the end, i.e. it has been neither cancelled nor failed.
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Cancel the scan, stopping the Mypy processes it started and their descendants. The scan then completes without
+     * results.
+     *
+     * @return the number of processes stopped, completed once all of them exited.
+     */
+    public CompletableFuture<Integer> cancel() {
+        cancelled = true;
+        return runningProcesses.cancel();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public int getFileCount() {
+        return files.size();
+    }
+
+    /**
+     * @return the process IDs of the Mypy processes currently run by the scan.
+     */
+    @NotNull
+    public List<Long> getProcessIds() {
+        return runningProcesses.getProcessIds();
+    }
+
+    /**
+     * Stop the scan to free its slot for a scan of higher priority, destroying the Mypy processes it started. The
+     * scan then completes without results and without notifying its listeners, see {@link #resetPreemption()}.
+     */
+    @SuppressWarnings("FutureReturnValueIgnored")
+    public void preempt() {
+        preempted = true;
+        runningProcesses.cancel();
+    }
+
+    public boolean isPreempted() {
+        return preempted;
+    }
+
+    /**
+     * Prepare a preempted scan to be run again.
+     */
+    @SuppressWarnings("FutureReturnValueIgnored")
+    public void resetPreemption() {
+        RunningProcesses processes = new RunningProcesses();
+        runningProcesses = processes;
+        preempted = false;
+        if (cancelled) {
+            processes.cancel();
+        }
+    }
+
     public void addListener(final ScannerListener listener) {
         listeners.add(listener);
     }
@@ -135,6 +313,10 @@ public class ScanFiles implements Callable<Map<PsiFile, List<Problem>>> {
         listeners.forEach(listener -> listener.scanStarting(filesToScan));
     }
 
+    private void fireFileScanned(final PsiFile file, final List<Problem> problems) {
+        listeners.forEach(listener -> listener.fileScanned(file, problems));
+    }
+
     private void fireScanCompletedSuccessfully(
             final Map<PsiFile, List<Problem>> fileResults) {
         listeners.forEach(listener -> listener.scanCompletedSuccessfully(fileResults));
@@ -154,6 +336,46 @@ public class ScanFiles implements Callable<Map<PsiFile, List<Problem>>> {
         return allChildFiles;
     }
 
+    private static class RunningProcesses implements ProcessTracker {
+        private final Set<Process> processes = new HashSet<>();
+        private boolean cancelled;
+
+        @SuppressWarnings("FutureReturnValueIgnored")
+        @Override
+        public synchronized void processStarted(@NotNull final Process process) {
+            if (cancelled) {
+                ProcessTrees.terminateProcesses(List.of(process));
+            } else {
+                processes.add(process);
+            }
+        }
+
+        @Override
+        public synchronized void processFinished(@NotNull final Process process) {
+            processes.remove(process);
+        }
+
+        @Override
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        synchronized List<Long> getProcessIds() {
+            List<Long> processIds = new ArrayList<>(processes.size());
+            for (Process process : processes) {
+                processIds.add(process.pid());
+            }
+            return processIds;
+        }
+
+        synchronized CompletableFuture<Integer> cancel() {
+            cancelled = true;
+            CompletableFuture<Integer> stopped = ProcessTrees.terminateProcesses(processes);
+            processes.clear();
+            return stopped;
+        }
+    }
+
     private static class FindChildFiles extends VirtualFileVisitor {
 
         private final VirtualFile virtualFile;
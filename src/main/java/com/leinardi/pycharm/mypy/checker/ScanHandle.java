@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.checker;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * A scan in progress, as listed by the scan registry of the {@link com.leinardi.pycharm.mypy.MypyPlugin}.
+ */
+public final class ScanHandle {
+    private final long id;
+    private final String scope;
+    private final ScanPriority priority;
+    private final long startTimeMillis;
+    private final ScanFiles scanFiles;
+    @Nullable
+    private volatile Future<?> future;
+
+    public ScanHandle(final long id,
+                      @NotNull final String scope,
+                      @NotNull final ScanPriority priority,
+                      @NotNull final ScanFiles scanFiles) {
+        this.id = id;
+        this.scope = scope;
+        this.priority = priority;
+        this.startTimeMillis = System.currentTimeMillis();
+        this.scanFiles = scanFiles;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return a description of what is being checked, e.g. the name of the file or directory.
+     */
+    @NotNull
+    public String getScope() {
+        return scope;
+    }
+
+    @NotNull
+    public ScanPriority getPriority() {
+        return priority;
+    }
+
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    public int getFileCount() {
+        return scanFiles.getFileCount();
+    }
+
+    /**
+     * @return the process IDs of the Mypy processes currently run by the scan.
+     */
+    @NotNull
+    public List<Long> getPids() {
+        return scanFiles.getProcessIds();
+    }
+
+    public void setFuture(@NotNull final Future<?> future) {
+        this.future = future;
+    }
+
+    /**
+     * Cancel the scan, whether it is queued or running.
+     *
+     * @return the number of Mypy processes stopped, see {@link ScanFiles#cancel()}.
+     */
+    @NotNull
+    public CompletableFuture<Integer> cancel() {
+        CompletableFuture<Integer> stopped = scanFiles.cancel();
+        Future<?> scanFuture = future;
+        if (scanFuture != null) {
+            // also removes the scan from the queue if it did not start yet
+            scanFuture.cancel(true);
+        }
+        return stopped;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[ScanHandle: id=%d; scope=%s; priority=%s; files=%d; pids=%s]",
+                id, scope, priority, getFileCount(), getPids());
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.checker;
+
+/**
+ * Priority classes of the scans, from the most to the least urgent.
+ */
+public enum ScanPriority {
+    /**
+     * The file being edited.
+     */
+    ACTIVE_EDITOR,
+    /**
+     * The other files shown by the editors.
+     */
+    VISIBLE_EDITOR,
+    /**
+     * The files about to be committed, with the commit dialog waiting for the results.
+     */
+    CHECKIN,
+    /**
+     * Project, module and incremental scans, which may be preempted by all the others.
+     */
+    BACKGROUND,
+    /**
+     * The files importing the files changed since the last incremental scan, checked after them.
+     */
+    DEPENDENTS
+}
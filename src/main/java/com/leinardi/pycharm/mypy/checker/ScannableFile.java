@@ -20,23 +20,22 @@ import com.intellij.application.options.CodeStyle;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectUtil;
 import com.intellij.openapi.util.ThrowableComputable;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
+import com.leinardi.pycharm.mypy.MypyConfigService;
 import com.leinardi.pycharm.mypy.MypyPlugin;
+import com.leinardi.pycharm.mypy.util.ContentHashes;
+import com.leinardi.pycharm.mypy.util.ContentWriter;
 import com.leinardi.pycharm.mypy.util.TempDirProvider;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
@@ -63,12 +62,14 @@ public class ScannableFile {
 
     private final File realFile;
     private final File baseTempDir;
+    private final File shadowFile;
     private final PsiFile psiFile;
 
     /**
      * Create a new scannable file from a PSI file.
      * <p>
-     * If required this will create a temporary copy of the file.
+     * If required this will create a temporary copy of the file or, for unsaved documents, a shadow copy that Mypy
+     * checks in place of the file while still reporting the issues at its real path.
      *
      * @param psiFile the psiFile to create the file from.
      * @throws IOException if file creation is required and fails.
@@ -76,15 +77,33 @@ public class ScannableFile {
     public ScannableFile(@NotNull final PsiFile psiFile) throws IOException {
         this.psiFile = psiFile;
 
-        if (!existsOnFilesystem(psiFile) || documentIsModifiedAndUnsaved(psiFile)) {
+        if (!existsOnFilesystem(psiFile)
+                || (documentIsModifiedAndUnsaved(psiFile) && !canUseShadowFile(psiFile))) {
             baseTempDir = prepareBaseTmpDirFor(psiFile);
             realFile = createTemporaryFileFor(psiFile, baseTempDir);
+            shadowFile = null;
+        } else if (documentIsModifiedAndUnsaved(psiFile)) {
+            baseTempDir = null;
+            realFile = new File(pathOf(psiFile));
+            shadowFile = createShadowFileFor(psiFile, realFile);
         } else {
             baseTempDir = null;
             realFile = new File(pathOf(psiFile));
+            shadowFile = null;
         }
     }
 
+    /**
+     * Tell whether a file can be checked, without creating any copy of it.
+     *
+     * @param psiFile the file.
+     * @param project the project of the file.
+     * @return true if the file can be checked.
+     */
+    public static boolean isScannable(@NotNull final PsiFile psiFile, @NotNull final Project project) {
+        return ReadAction.compute(() -> PsiFileValidator.isScannable(psiFile, project));
+    }
+
     public static List<ScannableFile> createAndValidate(@NotNull final Collection<PsiFile> psiFiles,
                                                         @NotNull final MypyPlugin plugin/*,
                                                         @Nullable final Module module*/) {
@@ -132,6 +151,25 @@ public class ScannableFile {
         return temporaryFile;
     }
 
+    /**
+     * The daemon is restarted whenever its options change, and the shadow files are part of them.
+     */
+    private boolean canUseShadowFile(@NotNull final PsiFile file) {
+        MypyConfigService mypyConfigService = MypyConfigService.getInstance(file.getProject());
+        return mypyConfigService != null && !mypyConfigService.isUseDaemon();
+    }
+
+    private File createShadowFileFor(@NotNull final PsiFile file, @NotNull final File sourceFile) throws IOException {
+        final File shadowDir = new TempDirProvider().forShadowFiles(file.getProject());
+        final File shadowFile = new File(shadowDir, String.format("%016x-%s",
+                ContentHashes.hash(sourceFile.getAbsolutePath()), file.getName()));
+
+        // written next to the shadow file and moved in place, as another scan may be reading it
+        ContentWriter.writeIfChanged(shadowFile.toPath(),
+                ContentWriter.encode(file.getViewProvider().getContents(), "\n", charSetOf(file)));
+        return shadowFile;
+    }
+
     private File parentDirFor(@NotNull final PsiFile file,
                               //                              @Nullable final Module module,
                               @NotNull final File baseTmpDir) {
@@ -222,17 +260,9 @@ public class ScannableFile {
 
     private void writeContentsToFile(final PsiFile file, final File outFile) throws IOException {
         final String lineSeparator = CodeStyle.getSettings(file.getProject()).getLineSeparator();
-
-        final Writer tempFileOut = writerTo(outFile, charSetOf(file));
-        for (final char character : file.getText().toCharArray()) {
-            if (character == '\n') { // PyCharm uses \n internally
-                tempFileOut.write(lineSeparator);
-            } else {
-                tempFileOut.write(character);
-            }
-        }
-        tempFileOut.flush();
-        tempFileOut.close();
+        // PyCharm uses \n internally
+        ContentWriter.writeIfChanged(outFile.toPath(),
+                ContentWriter.encode(file.getViewProvider().getContents(), lineSeparator, charSetOf(file)));
     }
 
     @NotNull
@@ -244,11 +274,6 @@ public class ScannableFile {
         return ofNullable(file.getVirtualFile());
     }
 
-    @NotNull
-    private Writer writerTo(final File outFile, final Charset charset) throws FileNotFoundException {
-        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFile), charset.newEncoder()));
-    }
-
     public File getFile() {
         return realFile;
     }
@@ -287,12 +312,23 @@ public class ScannableFile {
         return realFile.getAbsolutePath();
     }
 
+    /**
+     * Get the shadow copy of the file, if it has unsaved changes.
+     *
+     * @return the shadow copy, or null if Mypy must read the file itself.
+     */
+    @Nullable
+    public File getShadowFile() {
+        return shadowFile;
+    }
+
     public PsiFile getPsiFile() {
         return psiFile;
     }
 
     @Override
     public String toString() {
-        return String.format("[ScannableFile: file=%s; temporary=%s]", realFile.toString(), baseTempDir != null);
+        return String.format("[ScannableFile: file=%s; temporary=%s; shadow=%s]", realFile.toString(),
+                baseTempDir != null, shadowFile);
     }
 }
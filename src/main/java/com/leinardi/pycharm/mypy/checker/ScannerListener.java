@@ -28,6 +28,16 @@ public interface ScannerListener {
 
     void filesScanned(int count);
 
+    /**
+     * Receives the problems of a file as soon as they have been found, before the scan completes. Called from pooled
+     * threads, for the files with problems only.
+     *
+     * @param file     the file.
+     * @param problems its problems.
+     */
+    default void fileScanned(PsiFile file, List<Problem> problems) {
+    }
+
     void scanCompletedSuccessfully(
             Map<PsiFile, List<Problem>> scanResults);
 
@@ -17,17 +17,28 @@
 package com.leinardi.pycharm.mypy.checker;
 
 import com.intellij.psi.PsiFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.leinardi.pycharm.mypy.MypyPlugin;
 import com.leinardi.pycharm.mypy.exception.MypyPluginException;
 import com.leinardi.pycharm.mypy.toolwindow.MypyToolWindowPanel;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.SwingUtilities;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class UiFeedbackScannerListener implements ScannerListener {
+    /**
+     * The results of the files scanned meanwhile are displayed together, as each update of the tree walks all the
+     * displayed files.
+     */
+    private static final long RESULTS_UPDATE_DELAY_MILLIS = 100;
+
     private final MypyPlugin plugin;
+    private final Map<PsiFile, List<Problem>> pendingResults = new LinkedHashMap<>();
+    private boolean resultsUpdateScheduled;
 
     public UiFeedbackScannerListener(final MypyPlugin plugin) {
         this.plugin = plugin;
@@ -53,10 +64,27 @@ public class UiFeedbackScannerListener implements ScannerListener {
         });
     }
 
+    @SuppressWarnings("FutureReturnValueIgnored")
+    @Override
+    public void fileScanned(final PsiFile file, final List<Problem> problems) {
+        synchronized (pendingResults) {
+            pendingResults.put(file, problems);
+            if (resultsUpdateScheduled) {
+                return;
+            }
+            resultsUpdateScheduled = true;
+        }
+        AppExecutorUtil.getAppScheduledExecutorService().schedule(
+                () -> SwingUtilities.invokeLater(this::displayPendingResults),
+                RESULTS_UPDATE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
     @Override
     public void scanCompletedSuccessfully(
             final Map<PsiFile, List<Problem>> scanResults) {
         SwingUtilities.invokeLater(() -> {
+            // superseded by the complete results
+            takePendingResults();
             final MypyToolWindowPanel toolWindowPanel = toolWindowPanel();
             if (toolWindowPanel != null) {
                 toolWindowPanel.displayResults(scanResults);
@@ -74,6 +102,23 @@ public class UiFeedbackScannerListener implements ScannerListener {
         });
     }
 
+    private void displayPendingResults() {
+        final Map<PsiFile, List<Problem>> results = takePendingResults();
+        final MypyToolWindowPanel toolWindowPanel = toolWindowPanel();
+        if (toolWindowPanel != null && !results.isEmpty()) {
+            toolWindowPanel.mergeResults(results);
+        }
+    }
+
+    private Map<PsiFile, List<Problem>> takePendingResults() {
+        synchronized (pendingResults) {
+            final Map<PsiFile, List<Problem>> results = new LinkedHashMap<>(pendingResults);
+            pendingResults.clear();
+            resultsUpdateScheduled = false;
+            return results;
+        }
+    }
+
     @Nullable
     private MypyToolWindowPanel toolWindowPanel() {
         return MypyToolWindowPanel.panelFor(plugin.getProject());
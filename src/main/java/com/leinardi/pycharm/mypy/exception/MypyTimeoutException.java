@@ -0,0 +1,42 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.exception;
+
+import com.leinardi.pycharm.mypy.mpapi.Issue;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Thrown when a Mypy process did not finish in time and has been stopped.
+ */
+public class MypyTimeoutException extends MypyToolException {
+    private final transient List<Issue> partialIssues;
+
+    public MypyTimeoutException(String message, @NotNull List<Issue> partialIssues) {
+        super(message);
+        this.partialIssues = partialIssues;
+    }
+
+    /**
+     * @return the issues Mypy reported before being stopped.
+     */
+    @NotNull
+    public List<Issue> getPartialIssues() {
+        return partialIssues;
+    }
+}
@@ -23,6 +23,7 @@ package com.leinardi.pycharm.mypy.mpapi;
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.commons.lang.builder.ToStringBuilder;
+import org.jetbrains.annotations.Nullable;
 
 public class Issue {
 
@@ -31,13 +32,29 @@ public class Issue {
     private final int column;
     private final SeverityLevel severityLevel;
     private final String message;
+    private final String code;
+    private final int endLine;
+    private final int endColumn;
 
     public Issue(String path, int line, int column, SeverityLevel severityLevel, String message) {
+        this(path, line, column, severityLevel, message, null, -1, -1);
+    }
+
+    /**
+     * @param code      the Mypy error code (e.g. {@code arg-type}), or null if not reported.
+     * @param endLine   the line where the issue ends, or -1 if not reported.
+     * @param endColumn the 0-based column where the issue ends (exclusive), or -1 if not reported.
+     */
+    public Issue(String path, int line, int column, SeverityLevel severityLevel, String message,
+                 @Nullable String code, int endLine, int endColumn) {
         this.path = path;
         this.line = line;
         this.column = column;
         this.severityLevel = severityLevel;
         this.message = message;
+        this.code = code;
+        this.endLine = endLine;
+        this.endColumn = endColumn;
     }
 
     public String getPath() {
@@ -60,6 +77,19 @@ public class Issue {
         return message;
     }
 
+    @Nullable
+    public String getCode() {
+        return code;
+    }
+
+    public int getEndLine() {
+        return endLine;
+    }
+
+    public int getEndColumn() {
+        return endColumn;
+    }
+
     @Override
     public String toString() {
         return new ToStringBuilder(this)
@@ -68,9 +98,13 @@ public class Issue {
                 .append("column", column)
                 .append("type", severityLevel)
                 .append("message", message)
+                .append("code", code)
+                .append("endLine", endLine)
+                .append("endColumn", endColumn)
                 .toString();
     }
 
+    // The code is already part of the message, and the end position is derived from the same diagnostic
     @Override
     public int hashCode() {
         return new HashCodeBuilder()
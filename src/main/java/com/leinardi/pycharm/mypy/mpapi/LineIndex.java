@@ -0,0 +1,144 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.mpapi;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * The start offset of each line of a snapshot of a file, to map the line and column of a Mypy issue to an offset
+ * without scanning the text.
+ */
+final class LineIndex {
+    private final int[] lineStarts;
+    private final int lineCount;
+    private final int textLength;
+    private final boolean hasTabs;
+    private final long modificationStamp;
+
+    private LineIndex(final int[] lineStarts,
+                      final int lineCount,
+                      final int textLength,
+                      final boolean hasTabs,
+                      final long modificationStamp) {
+        this.lineStarts = lineStarts;
+        this.lineCount = lineCount;
+        this.textLength = textLength;
+        this.hasTabs = hasTabs;
+        this.modificationStamp = modificationStamp;
+    }
+
+    /**
+     * Index a text, accepting CR, LF and CRLF as line separators.
+     */
+    @NotNull
+    static LineIndex of(@NotNull final CharSequence text, final long modificationStamp) {
+        int[] lineStarts = new int[Math.max(16, text.length() / 32)];
+        int lineCount = 1;
+        boolean hasTabs = false;
+        for (int i = 0; i < text.length(); i++) {
+            char character = text.charAt(i);
+            // only the LF of CRLF starts a new line
+            boolean crOnly = character == '\r' && (i + 1 == text.length() || text.charAt(i + 1) != '\n');
+            if (character == '\n' || crOnly) {
+                if (lineCount == lineStarts.length) {
+                    lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+                }
+                lineStarts[lineCount++] = i + 1;
+            } else if (character == '\t') {
+                hasTabs = true;
+            }
+        }
+        return new LineIndex(lineStarts, lineCount, text.length(), hasTabs, modificationStamp);
+    }
+
+    /**
+     * Index a text whose line starts are already known, e.g. from the line table of its document.
+     */
+    @NotNull
+    static LineIndex of(@NotNull final CharSequence text,
+                        @NotNull final int[] lineStarts,
+                        final long modificationStamp) {
+        boolean hasTabs = false;
+        for (int i = 0; i < text.length() && !hasTabs; i++) {
+            hasTabs = text.charAt(i) == '\t';
+        }
+        return new LineIndex(lineStarts, lineStarts.length, text.length(), hasTabs, modificationStamp);
+    }
+
+    long getModificationStamp() {
+        return modificationStamp;
+    }
+
+    int getLineCount() {
+        return lineCount;
+    }
+
+    int getTextLength() {
+        return textLength;
+    }
+
+    /**
+     * @param line the 1-based line.
+     * @return the offset of the first character of the line, or the length of the text if there is no such line.
+     */
+    int getLineStart(final int line) {
+        return line >= 1 && line <= lineCount ? lineStarts[line - 1] : textLength;
+    }
+
+    /**
+     * Map a Mypy position to an offset, counting each tab as {@code tabWidth} columns.
+     *
+     * @param text     the indexed text.
+     * @param line     the 1-based line, or 0 if the column is an offset in the file.
+     * @param column   the column in the line.
+     * @param tabWidth the width of a tab.
+     * @return the offset, within the line if the column is past its end.
+     */
+    int getOffset(@NotNull final CharSequence text, final int line, final int column, final int tabWidth) {
+        if (line == 0) {
+            return Math.min(Math.max(column, 0), textLength);
+        }
+        int lineStart = getLineStart(line);
+        int lineEnd = getLineEnd(text, line);
+        if (!hasTabs) {
+            return Math.min(lineStart + Math.max(column, 0), lineEnd);
+        }
+        int offset = lineStart;
+        int visualColumn = 0;
+        while (offset < lineEnd && visualColumn < column) {
+            visualColumn += text.charAt(offset) == '\t' ? tabWidth : 1;
+            offset++;
+        }
+        return offset;
+    }
+
+    /**
+     * @return the offset of the line separator ending the line, or the length of the text for the last line.
+     */
+    private int getLineEnd(final CharSequence text, final int line) {
+        if (line >= lineCount) {
+            return textLength;
+        }
+        int lineEnd = lineStarts[line] - 1;
+        if (lineEnd > lineStarts[line - 1] && text.charAt(lineEnd) == '\n' && text.charAt(lineEnd - 1) == '\r') {
+            lineEnd--;
+        }
+        return lineEnd;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.mpapi;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Splits the files to check in the fewest groups not containing two files with the same module name, as Mypy refuses
+ * to check them together (see https://github.com/python/mypy/issues/4008), e.g. the {@code setup.py} of two
+ * sub-projects.
+ * <p>
+ * Module names are computed the way Mypy does it: by crawling up the directories containing an {@code __init__.py}.
+ */
+final class ModulePartitioner {
+    private static final String[] INIT_FILE_NAMES = {"__init__.py", "__init__.pyi"};
+
+    private final Predicate<String> isPackageDirectory;
+    private final Map<String, Boolean> packageDirectories = new HashMap<>();
+
+    ModulePartitioner(@NotNull final Predicate<String> isPackageDirectory) {
+        this.isPackageDirectory = isPackageDirectory;
+    }
+
+    /**
+     * @return a partitioner looking for the {@code __init__.py} files on the file system.
+     */
+    @NotNull
+    static ModulePartitioner forFileSystem() {
+        return new ModulePartitioner(directory -> {
+            for (String initFileName : INIT_FILE_NAMES) {
+                if (new File(directory, initFileName).isFile()) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Partition the files, first-fit in the given order.
+     *
+     * @param files the paths of the files to check.
+     * @return the groups of files, with no duplicate module name within a group.
+     */
+    @NotNull
+    List<Set<String>> partition(@NotNull final Collection<String> files) {
+        List<Set<String>> groups = new ArrayList<>();
+        List<Set<String>> groupModuleNames = new ArrayList<>();
+        for (String file : files) {
+            String moduleName = getModuleName(file);
+            int index = 0;
+            while (index < groups.size() && groupModuleNames.get(index).contains(moduleName)) {
+                index++;
+            }
+            if (index == groups.size()) {
+                groups.add(new LinkedHashSet<>());
+                groupModuleNames.add(new HashSet<>());
+            }
+            groups.get(index).add(file);
+            groupModuleNames.get(index).add(moduleName);
+        }
+        return groups;
+    }
+
+    @NotNull
+    String getModuleName(@NotNull final String file) {
+        String path = FileUtil.toSystemIndependentName(file);
+        int separatorIndex = path.lastIndexOf('/');
+        String fileName = path.substring(separatorIndex + 1);
+        int extensionIndex = fileName.lastIndexOf('.');
+        String moduleName = extensionIndex > 0 ? fileName.substring(0, extensionIndex) : fileName;
+
+        StringBuilder builder = new StringBuilder();
+        if (!"__init__".equals(moduleName)) {
+            builder.append(moduleName);
+        }
+        String directory = separatorIndex > 0 ? path.substring(0, separatorIndex) : null;
+        while (directory != null && isPackage(directory)) {
+            int parentSeparatorIndex = directory.lastIndexOf('/');
+            String packageName = directory.substring(parentSeparatorIndex + 1);
+            if (builder.length() > 0) {
+                builder.insert(0, '.');
+            }
+            builder.insert(0, packageName);
+            directory = parentSeparatorIndex > 0 ? directory.substring(0, parentSeparatorIndex) : null;
+        }
+        return builder.length() > 0 ? builder.toString() : moduleName;
+    }
+
+    private boolean isPackage(final String directory) {
+        return packageDirectories.computeIfAbsent(directory, isPackageDirectory::test);
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.mpapi;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.configurations.GeneralCommandLine;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.SystemInfo;
+import com.leinardi.pycharm.mypy.exception.MypyTimeoutException;
+import org.jdesktop.swingx.util.OS;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A Mypy daemon (dmypy) process, one of the workers of the {@link MypyProcessPool}.
+ * <p>
+ * The daemon is started lazily by the first {@code dmypy run} and restarted whenever the interpreter or the Mypy
+ * configuration used to start it changes.
+ */
+public final class MypyDaemon {
+    private static final Logger LOG = Logger.getInstance(MypyDaemon.class);
+    private static final String DMYPY_EXECUTABLE_NAME = "dmypy" + (OS.isWindows() ? ".exe" : "");
+    private static final Pattern PID_PATTERN = Pattern.compile("\"pid\"\\s*:\\s*(\\d+)");
+    private static final Pattern VM_RSS_PATTERN = Pattern.compile("VmRSS:\\s*(\\d+)\\s*kB");
+    private static final int STATUS_TIMEOUT_SECONDS = 10;
+    private static final long STREAM_DRAIN_TIMEOUT_MILLIS = 1000;
+
+    private final Project project;
+    private final File statusFile;
+
+    private String runningDmypyPath;
+    private String runningConfiguration;
+    private Set<String> lastFilesToScan;
+    private long lastUsedMillis;
+    private long coldRunMillis = -1;
+    private long lastWarmRunMillis = -1;
+    private volatile boolean checking;
+    private volatile boolean abortRequested;
+
+    MypyDaemon(@NotNull final Project project, @NotNull final File statusFile) {
+        this.project = project;
+        this.statusFile = statusFile;
+    }
+
+    /**
+     * Get the path of the dmypy executable installed next to the given Mypy executable.
+     *
+     * @param mypyPath the path of the Mypy executable.
+     * @return the path of dmypy, or an empty string if it is not installed.
+     */
+    @NotNull
+    public static String getDmypyPath(@NotNull final String mypyPath) {
+        File dmypyFile = new File(new File(mypyPath).getParentFile(), DMYPY_EXECUTABLE_NAME);
+        return dmypyFile.isFile() ? dmypyFile.getPath() : "";
+    }
+
+    /**
+     * Run a check through the daemon, restarting it first if it was started with a different configuration.
+     *
+     * @param dmypyPath     the path of the dmypy executable.
+     * @param configuration a string identifying the interpreter and Mypy configuration used by the check.
+     * @param filesToScan   the files being checked.
+     * @param check         the check to run, receiving the {@code dmypy run} command line to complete.
+     * @return the issues reported by the check.
+     */
+    synchronized List<Issue> run(@NotNull final String dmypyPath,
+                                 @NotNull final String configuration,
+                                 @NotNull final Set<String> filesToScan,
+                                 @NotNull final Check check) throws InterruptedIOException, InterruptedException {
+        if (runningDmypyPath != null && !configuration.equals(runningConfiguration)) {
+            LOG.info("Mypy configuration changed, restarting the daemon " + statusFile.getName());
+            stop();
+        }
+        boolean coldRun = runningDmypyPath == null;
+        runningDmypyPath = dmypyPath;
+        runningConfiguration = configuration;
+        lastFilesToScan = filesToScan;
+
+        GeneralCommandLine cmd = createCommandLine(dmypyPath);
+        cmd.addParameter("run");
+        cmd.addParameter("--");
+
+        long startTime = System.currentTimeMillis();
+        checking = true;
+        try {
+            return check.run(cmd);
+        } catch (InterruptedIOException e) {
+            // Superseded and cancelled checks only stop the dmypy client: the server finishes the check and stays
+            // warm for the next one. The pool maintenance kills it if it stops answering.
+            if (abortRequested) {
+                terminate();
+            }
+            throw e;
+        } catch (MypyTimeoutException e) {
+            // the daemon keeps checking after its client has been stopped
+            terminate();
+            throw e;
+        } finally {
+            checking = false;
+            abortRequested = false;
+            lastUsedMillis = System.currentTimeMillis();
+            long duration = lastUsedMillis - startTime;
+            if (coldRun) {
+                coldRunMillis = duration;
+                LOG.info("Mypy daemon " + statusFile.getName() + " cold run: " + duration + " ms");
+            } else {
+                lastWarmRunMillis = duration;
+                LOG.info("Mypy daemon " + statusFile.getName() + " warm run: " + duration
+                        + " ms (cold run: " + coldRunMillis + " ms)");
+            }
+        }
+    }
+
+    /**
+     * Stop the daemon server too, and not only its client, if the check in progress gets cancelled, e.g. because the
+     * user stopped the checks explicitly.
+     */
+    void abortCheck() {
+        if (checking) {
+            abortRequested = true;
+        }
+    }
+
+    /**
+     * Stop the daemon, if it has been started, and wait for it to exit.
+     * <p>
+     * The daemon is killed if {@code dmypy stop} fails or does not return in time, so that the next run does not
+     * race an old daemon still holding the status file.
+     */
+    @SuppressWarnings("FutureReturnValueIgnored")
+    synchronized void stop() {
+        if (runningDmypyPath == null) {
+            return;
+        }
+        GeneralCommandLine cmd = createCommandLine(runningDmypyPath);
+        cmd.addParameter("stop");
+        // dmypy stop deletes the status file, read the pid first in case the daemon has to be killed
+        long pid = readPid();
+        reset();
+        try {
+            LOG.info("Running command: " + cmd.getCommandLineString());
+            Process process = cmd.withRedirectErrorStream(true).createProcess();
+            StreamTail output = StreamTail.drain(process.getInputStream());
+            if (!process.waitFor(STATUS_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOG.warn("dmypy stop did not return in " + STATUS_TIMEOUT_SECONDS + " s, killing the Mypy daemon "
+                        + statusFile.getName() + ": " + output.getText());
+                awaitTermination(ProcessTrees.terminateProcesses(List.of(process)));
+                awaitTermination(terminate(pid));
+            } else if (process.exitValue() != 0) {
+                LOG.warn("dmypy stop failed with exit code " + process.exitValue() + ", killing the Mypy daemon "
+                        + statusFile.getName() + ": " + output.getText(STREAM_DRAIN_TIMEOUT_MILLIS));
+                awaitTermination(terminate(pid));
+            }
+        } catch (ExecutionException e) {
+            LOG.warn("Error while stopping the Mypy daemon", e);
+            awaitTermination(terminate(pid));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            terminate(pid);
+        }
+    }
+
+    /**
+     * Kill the daemon, for when it is not able to answer to a stop request anymore.
+     */
+    synchronized void kill() {
+        if (runningDmypyPath == null) {
+            return;
+        }
+        GeneralCommandLine cmd = createCommandLine(runningDmypyPath);
+        cmd.addParameter("kill");
+        reset();
+        try {
+            LOG.info("Running command: " + cmd.getCommandLineString());
+            cmd.createProcess().waitFor(STATUS_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            LOG.warn("Error while killing the Mypy daemon", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stop the daemon process and its descendants without going through dmypy, e.g. to abort a cancelled check.
+     */
+    @SuppressWarnings("FutureReturnValueIgnored")
+    private void terminate() {
+        long pid = readPid();
+        reset();
+        terminate(pid);
+    }
+
+    /**
+     * Stop the process with the given pid and its descendants, and delete the status file of the daemon.
+     *
+     * @param pid the process ID of the daemon, or -1 if unknown.
+     * @return the number of processes stopped, completed once all of them exited or have been killed.
+     */
+    @NotNull
+    private CompletableFuture<Integer> terminate(final long pid) {
+        CompletableFuture<Integer> termination = CompletableFuture.completedFuture(0);
+        if (pid > 0) {
+            LOG.info("Stopping the Mypy daemon " + statusFile.getName() + " (pid " + pid + ")");
+            termination = ProcessHandle.of(pid)
+                    .map(process -> ProcessTrees.terminate(List.of(process)))
+                    .orElse(termination);
+        }
+        // a stale status file would make the next run wait for the stopped daemon
+        //noinspection ResultOfMethodCallIgnored
+        statusFile.delete();
+        return termination;
+    }
+
+    /**
+     * Wait, for at most {@link #STATUS_TIMEOUT_SECONDS}, for processes to be stopped.
+     */
+    private void awaitTermination(@NotNull final CompletableFuture<Integer> termination) {
+        try {
+            termination.get(STATUS_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (java.util.concurrent.ExecutionException | TimeoutException e) {
+            LOG.warn("The Mypy daemon " + statusFile.getName() + " did not exit in time", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Ask the daemon for its status.
+     *
+     * @return false if the daemon has been started but does not answer anymore.
+     */
+    synchronized boolean isHealthy() {
+        if (runningDmypyPath == null) {
+            return true;
+        }
+        GeneralCommandLine cmd = createCommandLine(runningDmypyPath);
+        cmd.addParameter("status");
+        try {
+            Process process = cmd.createProcess();
+            if (!process.waitFor(STATUS_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return false;
+            }
+            return process.exitValue() == 0;
+        } catch (ExecutionException e) {
+            LOG.warn("Error while checking the Mypy daemon status", e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        }
+    }
+
+    /**
+     * Get the resident set size of the daemon process.
+     * <p>
+     * Only available on Linux, where it is read from {@code /proc}.
+     *
+     * @return the resident set size in bytes, or -1 if unknown.
+     */
+    synchronized long getRssBytes() {
+        if (runningDmypyPath == null || !SystemInfo.isLinux) {
+            return -1;
+        }
+        long pid = readPid();
+        if (pid <= 0) {
+            return -1;
+        }
+        try {
+            String status = Files.readString(Paths.get("/proc", Long.toString(pid), "status"), UTF_8);
+            Matcher rssMatcher = VM_RSS_PATTERN.matcher(status);
+            return rssMatcher.find() ? Long.parseLong(rssMatcher.group(1)) * 1024 : -1;
+        } catch (IOException | NumberFormatException e) {
+            LOG.debug("Unable to read the memory usage of the Mypy daemon", e);
+            return -1;
+        }
+    }
+
+    /**
+     * @return the process ID of the daemon read from its status file, or -1 if unknown.
+     */
+    private long readPid() {
+        try {
+            Matcher pidMatcher = PID_PATTERN.matcher(Files.readString(statusFile.toPath(), UTF_8));
+            return pidMatcher.find() ? Long.parseLong(pidMatcher.group(1)) : -1;
+        } catch (IOException | NumberFormatException e) {
+            LOG.debug("Unable to read the process ID of the Mypy daemon", e);
+            return -1;
+        }
+    }
+
+    synchronized boolean isRunning() {
+        return runningDmypyPath != null;
+    }
+
+    synchronized long getLastUsedMillis() {
+        return lastUsedMillis;
+    }
+
+    synchronized boolean hasScanned(@NotNull final Set<String> filesToScan) {
+        return filesToScan.equals(lastFilesToScan);
+    }
+
+    public synchronized long getColdRunMillis() {
+        return coldRunMillis;
+    }
+
+    public synchronized long getLastWarmRunMillis() {
+        return lastWarmRunMillis;
+    }
+
+    private void reset() {
+        runningDmypyPath = null;
+        runningConfiguration = null;
+        lastFilesToScan = null;
+        coldRunMillis = -1;
+        lastWarmRunMillis = -1;
+    }
+
+    @NotNull
+    private GeneralCommandLine createCommandLine(@NotNull final String dmypyPath) {
+        //noinspection ResultOfMethodCallIgnored
+        statusFile.getParentFile().mkdirs();
+        GeneralCommandLine cmd = new GeneralCommandLine(dmypyPath);
+        cmd.setCharset(UTF_8);
+        cmd.addParameter("--status-file");
+        cmd.addParameter(statusFile.getAbsolutePath());
+        MypyRunner.injectEnvironmentVariables(project, cmd);
+        cmd.setWorkDirectory(project.getBasePath());
+        return cmd;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[MypyDaemon: statusFile=%s; running=%s]", statusFile.getName(), isRunning());
+    }
+
+    /**
+     * A check executed through the daemon.
+     */
+    interface Check {
+        List<Issue> run(GeneralCommandLine cmd) throws InterruptedIOException, InterruptedException;
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.mpapi;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.leinardi.pycharm.mypy.exception.MypyPluginParseException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Streaming parser of the output of {@code mypy --output json}: one JSON object per line, e.g.
+ * <pre>
+ * {"file": "a.py", "line": 2, "column": 4, "message": "...", "hint": null, "code": "arg-type", "severity": "error"}
+ * </pre>
+ * Keys and the severity are matched in a reused buffer, only the values kept in the {@link Issue} are turned into
+ * strings. Lines that are not JSON objects, or are malformed, are skipped.
+ */
+final class MypyJsonOutputParser {
+    private static final Logger LOG = Logger.getInstance(MypyJsonOutputParser.class);
+    private static final int EOF = -1;
+
+    private final Reader reader;
+    private final StringBuilder buffer = new StringBuilder();
+    private int current;
+
+    private String file;
+    private int line;
+    private int column;
+    private String message;
+    private String hint;
+    private String code;
+    private SeverityLevel severityLevel;
+
+    private MypyJsonOutputParser(@NotNull final Reader reader) {
+        this.reader = reader;
+    }
+
+    @NotNull
+    static List<Issue> parse(@NotNull final InputStream inputStream) throws IOException {
+        return new MypyJsonOutputParser(new BufferedReader(new InputStreamReader(inputStream, UTF_8))).parse();
+    }
+
+    private List<Issue> parse() throws IOException {
+        List<Issue> issues = new ArrayList<>();
+        next();
+        while (current != EOF) {
+            skipWhitespace();
+            if (current == '{') {
+                try {
+                    parseDiagnostic(issues);
+                } catch (MypyPluginParseException e) {
+                    LOG.warn("Skipping malformed Mypy JSON output line: " + e.getMessage());
+                }
+            }
+            while (current != '\n' && current != EOF) {
+                next();
+            }
+            next();
+        }
+        return issues;
+    }
+
+    private void parseDiagnostic(final List<Issue> issues) throws IOException {
+        file = null;
+        line = 1;
+        column = 0;
+        message = null;
+        hint = null;
+        code = null;
+        severityLevel = null;
+
+        next();
+        skipWhitespace();
+        while (current != '}') {
+            readString();
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            readField();
+            skipWhitespace();
+            if (current == ',') {
+                next();
+                skipWhitespace();
+            } else if (current != '}') {
+                throw unexpected();
+            }
+        }
+        next();
+
+        if (file == null || message == null || severityLevel == null) {
+            return;
+        }
+        issues.add(new Issue(file, line, column, severityLevel,
+                code == null ? message : message + "  [" + code + "]", code, -1, -1));
+        if (hint != null) {
+            for (String hintLine : hint.split("\n")) {
+                issues.add(new Issue(file, line, column, SeverityLevel.NOTE, hintLine));
+            }
+        }
+    }
+
+    /**
+     * Read the value of the field whose key is in the buffer.
+     */
+    private void readField() throws IOException {
+        if (isKey("file")) {
+            file = readNullableString();
+        } else if (isKey("line")) {
+            line = readInt();
+        } else if (isKey("column")) {
+            // Mypy reports 0-based columns in JSON, as IntelliJ expects them
+            column = Math.max(0, readInt());
+        } else if (isKey("message")) {
+            message = readNullableString();
+        } else if (isKey("hint")) {
+            hint = readNullableString();
+        } else if (isKey("code")) {
+            code = readNullableString();
+        } else if (isKey("severity")) {
+            severityLevel = readSeverityLevel();
+        } else {
+            skipValue();
+        }
+    }
+
+    private boolean isKey(final String key) {
+        return key.contentEquals(buffer);
+    }
+
+    @Nullable
+    private String readNullableString() throws IOException {
+        if (current == 'n') {
+            skipLiteral();
+            return null;
+        }
+        readString();
+        return buffer.toString();
+    }
+
+    @Nullable
+    private SeverityLevel readSeverityLevel() throws IOException {
+        readString();
+        if ("error".contentEquals(buffer)) {
+            return SeverityLevel.ERROR;
+        } else if ("warning".contentEquals(buffer)) {
+            return SeverityLevel.WARNING;
+        } else if ("note".contentEquals(buffer)) {
+            return SeverityLevel.NOTE;
+        }
+        return null;
+    }
+
+    private int readInt() throws IOException {
+        if (current == 'n') {
+            skipLiteral();
+            return -1;
+        }
+        boolean negative = current == '-';
+        if (negative) {
+            next();
+        }
+        if (current < '0' || current > '9') {
+            throw unexpected();
+        }
+        int value = 0;
+        while (current >= '0' && current <= '9') {
+            value = value * 10 + (current - '0');
+            next();
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Read a JSON string into the buffer, decoding its escape sequences.
+     */
+    private void readString() throws IOException {
+        expect('"');
+        buffer.setLength(0);
+        while (current != '"') {
+            if (current == EOF || current == '\n') {
+                throw unexpected();
+            }
+            if (current == '\\') {
+                next();
+                switch (current) {
+                    case 'b':
+                        buffer.append('\b');
+                        break;
+                    case 'f':
+                        buffer.append('\f');
+                        break;
+                    case 'n':
+                        buffer.append('\n');
+                        break;
+                    case 'r':
+                        buffer.append('\r');
+                        break;
+                    case 't':
+                        buffer.append('\t');
+                        break;
+                    case 'u':
+                        buffer.append(readUnicodeEscape());
+                        continue;
+                    case EOF:
+                        throw unexpected();
+                    default:
+                        buffer.append((char) current);
+                        break;
+                }
+            } else {
+                buffer.append((char) current);
+            }
+            next();
+        }
+        next();
+    }
+
+    private char readUnicodeEscape() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            next();
+            int digit = Character.digit(current, 16);
+            if (digit < 0) {
+                throw unexpected();
+            }
+            value = (value << 4) | digit;
+        }
+        next();
+        return (char) value;
+    }
+
+    private void skipValue() throws IOException {
+        if (current == '"') {
+            readString();
+        } else if (current == '{' || current == '[') {
+            int depth = 0;
+            do {
+                if (current == '"') {
+                    readString();
+                    continue;
+                }
+                if (current == '{' || current == '[') {
+                    depth++;
+                } else if (current == '}' || current == ']') {
+                    depth--;
+                } else if (current == EOF) {
+                    throw unexpected();
+                }
+                next();
+            } while (depth > 0);
+        } else {
+            skipLiteral();
+        }
+    }
+
+    /**
+     * Skip a number, {@code true}, {@code false} or {@code null}.
+     */
+    private void skipLiteral() throws IOException {
+        while (current != ',' && current != '}' && current != ']' && current != '\n' && current != EOF
+                && !Character.isWhitespace(current)) {
+            next();
+        }
+    }
+
+    private void skipWhitespace() throws IOException {
+        while (current == ' ' || current == '\t' || current == '\r') {
+            next();
+        }
+    }
+
+    private void expect(final char expected) throws IOException {
+        if (current != expected) {
+            throw unexpected();
+        }
+        next();
+    }
+
+    private void next() throws IOException {
+        current = reader.read();
+    }
+
+    private MypyPluginParseException unexpected() {
+        return new MypyPluginParseException(current == EOF
+                ? "Unexpected end of the Mypy JSON output"
+                : "Unexpected character '" + (char) current + "' in the Mypy JSON output");
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.mpapi;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.leinardi.pycharm.mypy.MypyConfigService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a bounded number of warm Mypy daemons per project and hands them out to the scans, so that the interpreter
+ * start-up and the Mypy import costs are only paid once per worker.
+ * <p>
+ * Workers left idle for longer than the configured timeout, or using more memory than allowed, are stopped and
+ * restarted on demand. Idle workers are also periodically asked for their status, and killed if they do not answer.
+ */
+@Service
+public final class MypyProcessPool implements Disposable {
+    private static final Logger LOG = Logger.getInstance(MypyProcessPool.class);
+    private static final long MAINTENANCE_PERIOD_SECONDS = 60;
+
+    private final Project project;
+    private final File statusFilesDir;
+    private final List<MypyDaemon> workers = new ArrayList<>();
+    private final Set<MypyDaemon> busyWorkers = new HashSet<>();
+    private final ScheduledFuture<?> maintenance;
+
+    public MypyProcessPool(@NotNull final Project project) {
+        this.project = project;
+        this.statusFilesDir = new File(PathManager.getSystemPath() + File.separator + "mypy" + File.separator
+                + project.getLocationHash());
+        this.maintenance = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+                this::evictWorkers, MAINTENANCE_PERIOD_SECONDS, MAINTENANCE_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public static MypyProcessPool getInstance(@NotNull final Project project) {
+        return project.getService(MypyProcessPool.class);
+    }
+
+    /**
+     * Run a check on the first available worker, waiting for one if all of them are busy.
+     *
+     * @param dmypyPath     the path of the dmypy executable.
+     * @param configuration a string identifying the interpreter and Mypy configuration used by the check.
+     * @param filesToScan   the files being checked.
+     * @param check         the check to run.
+     * @return the issues reported by the check.
+     */
+    List<Issue> run(@NotNull final String dmypyPath,
+                    @NotNull final String configuration,
+                    @NotNull final Set<String> filesToScan,
+                    @NotNull final MypyDaemon.Check check) throws InterruptedIOException, InterruptedException {
+        MypyDaemon worker = acquire(filesToScan);
+        try {
+            return worker.run(dmypyPath, configuration, filesToScan, check);
+        } finally {
+            release(worker);
+        }
+    }
+
+    /**
+     * Stop all the workers, e.g. because the daemon mode has been disabled.
+     */
+    public void stopAll() {
+        List<MypyDaemon> allWorkers;
+        synchronized (workers) {
+            allWorkers = new ArrayList<>(workers);
+        }
+        allWorkers.forEach(MypyDaemon::stop);
+    }
+
+    /**
+     * Have the checks in progress stop their daemon server once they get cancelled, instead of letting it finish them.
+     */
+    public void abortChecks() {
+        List<MypyDaemon> allWorkers;
+        synchronized (workers) {
+            allWorkers = new ArrayList<>(workers);
+        }
+        allWorkers.forEach(MypyDaemon::abortCheck);
+    }
+
+    @Override
+    public void dispose() {
+        maintenance.cancel(false);
+        stopAll();
+    }
+
+    private MypyDaemon acquire(final Set<String> filesToScan) throws InterruptedException {
+        synchronized (workers) {
+            while (true) {
+                MypyDaemon worker = findIdleWorker(filesToScan);
+                if (worker == null && workers.size() < getMaxWorkers()) {
+                    worker = new MypyDaemon(project, new File(statusFilesDir, "dmypy-" + workers.size() + ".json"));
+                    workers.add(worker);
+                }
+                if (worker != null) {
+                    busyWorkers.add(worker);
+                    return worker;
+                }
+                workers.wait();
+            }
+        }
+    }
+
+    /**
+     * Prefer the worker that last checked the very same files, as its incremental state is the most useful, then
+     * any already started worker.
+     */
+    @Nullable
+    private MypyDaemon findIdleWorker(final Set<String> filesToScan) {
+        MypyDaemon candidate = null;
+        for (MypyDaemon worker : workers) {
+            if (busyWorkers.contains(worker)) {
+                continue;
+            }
+            if (worker.hasScanned(filesToScan)) {
+                return worker;
+            }
+            if (candidate == null || (!candidate.isRunning() && worker.isRunning())) {
+                candidate = worker;
+            }
+        }
+        return candidate;
+    }
+
+    private void release(final MypyDaemon worker) {
+        synchronized (workers) {
+            busyWorkers.remove(worker);
+            workers.notifyAll();
+        }
+    }
+
+    private int getMaxWorkers() {
+        MypyConfigService mypyConfigService = MypyConfigService.getInstance(project);
+        return mypyConfigService == null ? 1 : Math.max(1, mypyConfigService.getDaemonPoolSize());
+    }
+
+    private void evictWorkers() {
+        MypyConfigService mypyConfigService = MypyConfigService.getInstance(project);
+        if (mypyConfigService == null) {
+            return;
+        }
+        long idleTimeoutMillis = TimeUnit.MINUTES.toMillis(mypyConfigService.getDaemonIdleTimeoutMinutes());
+        long maxRssBytes = mypyConfigService.getDaemonMaxRssMegabytes() * 1024L * 1024L;
+
+        List<MypyDaemon> idleWorkers = new ArrayList<>();
+        synchronized (workers) {
+            for (MypyDaemon worker : workers) {
+                if (!busyWorkers.contains(worker) && worker.isRunning()) {
+                    idleWorkers.add(worker);
+                }
+            }
+            // keep them busy while they are being checked, so that no scan is sent to them meanwhile
+            busyWorkers.addAll(idleWorkers);
+        }
+        try {
+            for (MypyDaemon worker : idleWorkers) {
+                long rssBytes = worker.getRssBytes();
+                if (System.currentTimeMillis() - worker.getLastUsedMillis() > idleTimeoutMillis) {
+                    LOG.info("Stopping idle Mypy daemon " + worker);
+                    worker.stop();
+                } else if (maxRssBytes > 0 && rssBytes > maxRssBytes) {
+                    LOG.info("Stopping Mypy daemon " + worker + " using " + rssBytes / (1024 * 1024) + " MB");
+                    worker.stop();
+                } else if (!worker.isHealthy()) {
+                    LOG.warn("Mypy daemon " + worker + " is not responding, killing it");
+                    worker.kill();
+                }
+            }
+        } finally {
+            synchronized (workers) {
+                busyWorkers.removeAll(idleWorkers);
+                workers.notifyAll();
+            }
+        }
+    }
+}
@@ -27,13 +27,13 @@ import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.PathUtil;
-import com.jetbrains.python.packaging.PyPackage;
-import com.jetbrains.python.packaging.PyPackageManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.jetbrains.python.sdk.PySdkUtil;
 import com.jetbrains.python.sdk.PythonEnvUtil;
 import com.leinardi.pycharm.mypy.MypyConfigService;
 import com.leinardi.pycharm.mypy.exception.MypyPluginException;
 import com.leinardi.pycharm.mypy.exception.MypyPluginParseException;
+import com.leinardi.pycharm.mypy.exception.MypyTimeoutException;
 import com.leinardi.pycharm.mypy.exception.MypyToolException;
 import com.leinardi.pycharm.mypy.util.FileTypes;
 import com.leinardi.pycharm.mypy.util.Notifications;
@@ -50,11 +50,15 @@ import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -68,10 +72,10 @@ public class MypyRunner {
     private static final String ENV_KEY_VIRTUAL_ENV = "VIRTUAL_ENV";
     private static final String ENV_KEY_PATH = "PATH";
     private static final String ENV_KEY_PYTHONHOME = "PYTHONHOME";
-    private static final String TYPE_RE = " (error|warning|note):";
-    private static final String ISSUE_RE = "([^\\s:]+):(\\d+:)?(\\d+:)?" + TYPE_RE + ".*";
+    private static final Pattern VERSION_PATTERN = Pattern.compile("mypy (\\d+)\\.(\\d+)");
     private static final String WHICH_EXECUTABLE_NAME = OS.isWindows() ? "where" : "which";
     private static final String ACTIVATE_FILE_NAME = OS.isWindows() ? "activate.bat" : "activate";
+    private static final long STREAM_TAIL_TIMEOUT_MILLIS = 1000;
 
     private MypyRunner() {
     }
@@ -87,12 +91,7 @@ public class MypyRunner {
             return false;
         }
         GeneralCommandLine cmd = getMypyCommandLine(project, mypyPath);
-        boolean daemon = false;
-        if (daemon) {
-            cmd.addParameter("status");
-        } else {
-            cmd.addParameter("-V");
-        }
+        cmd.addParameter("-V");
         final Process process;
         try {
             process = cmd.createProcess();
@@ -122,8 +121,48 @@ public class MypyRunner {
         }
     }
 
+    /**
+     * Get the output of {@code mypy -V} for the given executable.
+     *
+     * @param project  the current project.
+     * @param mypyPath the path of the Mypy executable.
+     * @return the Mypy version, or an empty string if it could not be determined.
+     * @see MypyToolchainCache
+     */
+    public static String getMypyVersion(Project project, String mypyPath) {
+        return MypyToolchainCache.getInstance(project).getMypyVersion(mypyPath);
+    }
+
+    /**
+     * Run {@code mypy -V}.
+     *
+     * @return the output of the command, or null if the executable is not valid.
+     */
+    @Nullable
+    static String readMypyVersion(Project project, String mypyPath) {
+        GeneralCommandLine cmd = getMypyCommandLine(project, mypyPath);
+        cmd.addParameter("-V");
+        try {
+            Process process = cmd.createProcess();
+            String output = new BufferedReader(new InputStreamReader(process.getInputStream(), UTF_8))
+                    .lines().collect(Collectors.joining("\n"));
+            process.waitFor();
+            if (process.exitValue() != 0) {
+                LOG.info("Command Line string: " + cmd.getCommandLineString());
+                LOG.warn("Mypy path check process.exitValue: " + process.exitValue());
+                return null;
+            }
+            LOG.debug("Mypy path check output: " + output);
+            return output.trim();
+        } catch (ExecutionException | InterruptedException e) {
+            LOG.info("Command Line string: " + cmd.getCommandLineString());
+            LOG.warn("Error while checking Mypy path", e);
+            return null;
+        }
+    }
+
     public static String getMypyPath(Project project) {
-        return getMypyPath(project, true);
+        return MypyToolchainCache.getInstance(project).getMypyPath();
     }
 
     public static String getMypyPath(Project project, boolean checkConfigService) {
@@ -155,7 +194,7 @@ public class MypyRunner {
     }
 
     public static boolean checkMypyAvailable(Project project, boolean showNotifications) {
-        Sdk projectSdk = ProjectRootManager.getInstance(project).getProjectSdk();
+        Sdk projectSdk = getProjectSdk(project);
         if (projectSdk == null
                 || projectSdk.getHomeDirectory() == null
                 || !projectSdk.getHomeDirectory().exists()) {
@@ -163,28 +202,28 @@ public class MypyRunner {
                 Notifications.showNoPythonInterpreter(project);
             }
             return false;
-        } else if (showNotifications) {
-            PyPackageManager pyPackageManager = PyPackageManager.getInstance(projectSdk);
-            List<PyPackage> packages = pyPackageManager.getPackages();
-            if (packages != null) {
-                if (packages.stream().noneMatch(it -> MYPY_PACKAGE_NAME.equals(it.getName()))) {
-                    Notifications.showInstallMypy(project);
-                    return false;
-                }
-            }
+        } else if (showNotifications
+                && Boolean.FALSE.equals(MypyToolchainCache.getInstance(project).isMypyInstalled(projectSdk))) {
+            Notifications.showInstallMypy(project);
+            return false;
         }
         MypyConfigService mypyConfigService = MypyConfigService.getInstance(project);
         if (mypyConfigService == null) {
             throw new IllegalStateException("MypyConfigService is null");
         }
         String mypyPath = getMypyPath(project);
-        boolean isMypyPathValid = !mypyPath.isEmpty() && isMypyPathValid(mypyPath, project);
+        boolean isMypyPathValid = MypyToolchainCache.getInstance(project).isMypyPathValid(mypyPath);
         if (showNotifications && !isMypyPathValid) {
             Notifications.showUnableToRunMypy(project);
         }
         return isMypyPathValid;
     }
 
+    @Nullable
+    static Sdk getProjectSdk(Project project) {
+        return ProjectRootManager.getInstance(project).getProjectSdk();
+    }
+
     private static String getMypyConfigFile(Project project, String mypyConfigFilePath) throws MypyPluginException {
         String absolutePath = new File(mypyConfigFilePath).getAbsolutePath();
         if (mypyConfigFilePath.isEmpty()) {
@@ -230,6 +269,23 @@ public class MypyRunner {
 
     public static List<Issue> scan(Project project, Set<String> filesToScan)
             throws InterruptedIOException, InterruptedException {
+        return scan(project, filesToScan, Collections.emptyMap(), ProcessTracker.NONE, 0);
+    }
+
+    /**
+     * Check the files with Mypy.
+     *
+     * @param project        the current project.
+     * @param filesToScan    the paths of the files to check.
+     * @param shadowFiles    the shadow copies of the files with unsaved changes, by path of the file.
+     * @param processTracker receives the Mypy processes started by the scan.
+     * @param timeoutSeconds how long each Mypy process may run before being stopped, or 0 for no limit.
+     * @return the issues reported by Mypy.
+     * @throws MypyTimeoutException if a Mypy process did not finish in time, with the issues reported until then.
+     */
+    public static List<Issue> scan(Project project, Set<String> filesToScan, Map<String, String> shadowFiles,
+                                   ProcessTracker processTracker, int timeoutSeconds)
+            throws InterruptedIOException, InterruptedException {
         if (!checkMypyAvailable(project, true)) {
             return new ArrayList<>();
         }
@@ -248,45 +304,131 @@ public class MypyRunner {
 
         String mypyConfigFilePath = getMypyConfigFile(project, mypyConfigService.getMypyConfigFilePath());
 
-        // Necessary because of this: https://github.com/python/mypy/issues/4008#issuecomment-417862464
+        // Files with the same module name (e.g. the setup.py of two sub-projects) can't be checked together,
+        // see https://github.com/python/mypy/issues/4008#issuecomment-417862464
         List<Issue> result = new ArrayList<>();
-        Set<String> filesToScanFiltered = new HashSet<>();
-        for (String filePath : filesToScan) {
-            if (filePath.endsWith("__init__.py")
-                    || filePath.endsWith("__main__.py")
-                    || filePath.endsWith("setup.py")
-            ) {
-                result.addAll(runMypy(project, Collections.singleton(filePath), mypyPath, mypyConfigFilePath,
-                        mypyConfigService));
-            } else {
-                filesToScanFiltered.add(filePath);
+        ModulePartitioner modulePartitioner = ModulePartitioner.forFileSystem();
+        for (Set<String> group : modulePartitioner.partition(filesToScan)) {
+            try {
+                if (mypyConfigService.isShardedScans() && mypyConfigService.getMaxConcurrentShards() > 1) {
+                    result.addAll(runMypyShards(project, group, shadowFiles, mypyPath, mypyConfigFilePath,
+                            mypyConfigService, modulePartitioner, processTracker, timeoutSeconds));
+                } else {
+                    result.addAll(runMypy(project, group, shadowFiles, mypyPath, mypyConfigFilePath,
+                            mypyConfigService, processTracker, timeoutSeconds));
+                }
+            } catch (MypyTimeoutException e) {
+                // the remaining groups are not checked, they would likely time out as well
+                result.addAll(e.getPartialIssues());
+                throw new MypyTimeoutException(e.getMessage(), result);
             }
         }
-        result.addAll(runMypy(project, filesToScanFiltered, mypyPath, mypyConfigFilePath, mypyConfigService));
         return result;
     }
 
-    private static List<Issue> runMypy(Project project, Set<String> filesToScan, String mypyPath,
-                                       String mypyConfigFilePath, MypyConfigService mypyConfigService)
+    /**
+     * Check the files with concurrent Mypy processes, one per shard. The processes share the same working
+     * directory and configuration, hence the same Mypy cache.
+     */
+    private static List<Issue> runMypyShards(Project project, Set<String> filesToScan,
+                                             Map<String, String> shadowFiles, String mypyPath,
+                                             String mypyConfigFilePath, MypyConfigService mypyConfigService,
+                                             ModulePartitioner modulePartitioner, ProcessTracker processTracker,
+                                             int timeoutSeconds)
+            throws InterruptedIOException, InterruptedException {
+        int maxConcurrentShards = mypyConfigService.getMaxConcurrentShards();
+        List<Set<String>> shards = ScanShards.partition(filesToScan, modulePartitioner::getModuleName,
+                maxConcurrentShards);
+        if (shards.size() < 2) {
+            return runMypy(project, filesToScan, shadowFiles, mypyPath, mypyConfigFilePath, mypyConfigService,
+                    processTracker, timeoutSeconds);
+        }
+        LOG.info("Checking " + filesToScan.size() + " files in " + shards.size() + " shards");
+        ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Mypy shards",
+                maxConcurrentShards);
+        try {
+            List<Future<List<Issue>>> futures = new ArrayList<>();
+            for (Set<String> shard : shards) {
+                futures.add(executor.submit(() -> runMypy(project, shard, shadowFiles, mypyPath,
+                        mypyConfigFilePath, mypyConfigService, processTracker, timeoutSeconds)));
+            }
+            List<Issue> result = new ArrayList<>();
+            MypyTimeoutException timeout = null;
+            for (Future<List<Issue>> future : futures) {
+                try {
+                    result.addAll(future.get());
+                } catch (java.util.concurrent.ExecutionException e) {
+                    if (!(e.getCause() instanceof MypyTimeoutException)) {
+                        throw e;
+                    }
+                    // keep the results of the other shards, each of them has its own watchdog
+                    timeout = (MypyTimeoutException) e.getCause();
+                    result.addAll(timeout.getPartialIssues());
+                }
+            }
+            if (timeout != null) {
+                throw new MypyTimeoutException(timeout.getMessage(), result);
+            }
+            return result;
+        } catch (java.util.concurrent.ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof InterruptedIOException) {
+                throw (InterruptedIOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new MypyPluginException("Error while checking the shards", cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<Issue> runMypy(Project project, Set<String> filesToScan, Map<String, String> shadowFiles,
+                                       String mypyPath, String mypyConfigFilePath, MypyConfigService mypyConfigService,
+                                       ProcessTracker processTracker, int timeoutSeconds)
             throws InterruptedIOException, InterruptedException {
         if (filesToScan.isEmpty()) {
             return new ArrayList<>();
         }
-        boolean daemon = false;
+        String dmypyPath = "";
+        if (mypyConfigService.isUseDaemon()) {
+            dmypyPath = MypyDaemon.getDmypyPath(mypyPath);
+            if (dmypyPath.isEmpty()) {
+                LOG.info("dmypy not found next to " + mypyPath + ", falling back to Mypy");
+            }
+        }
 
-        GeneralCommandLine cmd = new GeneralCommandLine(mypyPath);
-        cmd.setCharset(UTF_8);
-        if (daemon) {
-            cmd.addParameter("run");
-            cmd.addParameter("--");
-            cmd.addParameter("``--show-column-numbers");
-        } else {
-            cmd.addParameter("--show-column-numbers");
+        String mypyVersion = getMypyVersion(project, mypyPath);
+        boolean jsonOutput = isJsonOutputRequested(mypyConfigService.getMypyArguments());
+        if (dmypyPath.isEmpty()) {
+            GeneralCommandLine cmd = new GeneralCommandLine(mypyPath);
+            cmd.setCharset(UTF_8);
+            injectEnvironmentVariables(project, cmd);
+            addMypyParameters(project, cmd, filesToScan, shadowFiles, "silent", mypyVersion, mypyConfigFilePath,
+                    mypyConfigService);
+            return runMypyProcess(project, cmd, jsonOutput, processTracker, timeoutSeconds);
         }
-        cmd.addParameter("--follow-imports");
-        cmd.addParameter("silent");
+        String configuration = getDaemonConfiguration(project, mypyPath, mypyConfigFilePath, mypyConfigService);
+        return MypyProcessPool.getInstance(project).run(dmypyPath, configuration, filesToScan, cmd -> {
+            // The daemon does not support silent imports: issues of the followed modules are dropped when mapping
+            // the results back to the scanned files.
+            addMypyParameters(project, cmd, filesToScan, shadowFiles, "normal", mypyVersion, mypyConfigFilePath,
+                    mypyConfigService);
+            return runMypyProcess(project, cmd, jsonOutput, processTracker, timeoutSeconds);
+        });
+    }
 
-        injectEnvironmentVariables(project, cmd);
+    private static void addMypyParameters(Project project, GeneralCommandLine cmd, Set<String> filesToScan,
+                                          Map<String, String> shadowFiles, String followImports,
+                                          String mypyVersion, String mypyConfigFilePath,
+                                          MypyConfigService mypyConfigService) {
+        cmd.addParameter("--show-column-numbers");
+        cmd.addParameter("--follow-imports");
+        cmd.addParameter(followImports);
+        // The JSON output has no end positions, which are used for the ranges of the annotations
+        if (isMypyVersionAtLeast(mypyVersion, 0, 981)) {
+            cmd.addParameter("--show-error-end");
+        }
 
         if (!mypyConfigFilePath.isEmpty()) {
             cmd.addParameter("--config-file");
@@ -296,33 +438,77 @@ public class MypyRunner {
         ParametersList parametersList = cmd.getParametersList();
         parametersList.addParametersString(mypyConfigService.getMypyArguments());
 
+        for (String file : filesToScan) {
+            String shadowFile = shadowFiles.get(file);
+            if (shadowFile != null) {
+                cmd.addParameter("--shadow-file");
+                cmd.addParameter(file);
+                cmd.addParameter(shadowFile);
+            }
+        }
         for (String file : filesToScan) {
             cmd.addParameter(file);
         }
         cmd.setWorkDirectory(project.getBasePath());
-        final Process process;
+    }
+
+    /**
+     * Identify the interpreter and the Mypy configuration a daemon has been started with, so that it can be
+     * restarted when any of them changes.
+     */
+    private static String getDaemonConfiguration(Project project, String mypyPath, String mypyConfigFilePath,
+                                                 MypyConfigService mypyConfigService) {
+        VirtualFile interpreterFile = getInterpreterFile(project);
+        long configFileTimestamp = mypyConfigFilePath.isEmpty() ? 0 : new File(mypyConfigFilePath).lastModified();
+        return String.join(File.pathSeparator,
+                interpreterFile == null ? "" : interpreterFile.getPath(),
+                mypyPath,
+                mypyConfigFilePath,
+                Long.toString(configFileTimestamp),
+                mypyConfigService.getMypyArguments());
+    }
+
+    private static List<Issue> runMypyProcess(Project project, GeneralCommandLine cmd, boolean jsonOutput,
+                                              ProcessTracker processTracker, int timeoutSeconds)
+            throws InterruptedIOException, InterruptedException {
+        Process process = null;
+        ScheduledFuture<?> watchdog = null;
+        AtomicBoolean timedOut = new AtomicBoolean();
+        StreamTail errorTail = null;
 
         try {
+            if (processTracker.isCancelled()) {
+                throw new InterruptedIOException("Scan cancelled before starting Mypy");
+            }
             LOG.info("Running command: " + cmd.getCommandLineString());
             process = cmd.createProcess();
+            processTracker.processStarted(process);
+            // read concurrently, as Mypy blocks once the pipe of a stream nobody reads is full
+            errorTail = StreamTail.drain(process.getErrorStream());
+            watchdog = startWatchdog(process, timedOut, timeoutSeconds);
             InputStream inputStream = process.getInputStream();
             assert (inputStream != null);
 
-            List<Issue> issues = parseMypyOutput(inputStream);
+            List<Issue> issues = parseMypyOutput(inputStream, jsonOutput);
             process.waitFor();
+            if (processTracker.isCancelled()) {
+                // the process has been destroyed: its exit code and output are meaningless
+                throw new InterruptedIOException("Scan cancelled while running Mypy");
+            }
+            checkTimedOut(cmd, timedOut, errorTail, issues);
 
             int exitCode = process.exitValue();
+            String errorOutput = errorTail.getText(STREAM_TAIL_TIMEOUT_MILLIS);
+            if (!errorOutput.isEmpty()) {
+                LOG.debug("Mypy error output:\n" + errorOutput);
+            }
             if (exitCode != 0 && exitCode != 1) {
                 // Ideally, anything other than 0 or 1 should be an abnormal exit code,
                 // but there are still cases where Mypy returns 2 and still reports errors
                 // (e.g. syntax errors or "break" outside loop).
                 // See https://github.com/python/mypy/issues/6003.
                 if (issues.size() == 0) {
-                    InputStream errStream = process.getErrorStream();
-                    String detail = new BufferedReader(new InputStreamReader(errStream, UTF_8))
-                            .lines().collect(Collectors.joining("\n"));
-
-                    Notifications.showMypyAbnormalExit(project, detail);
+                    Notifications.showMypyAbnormalExit(project, errorOutput);
                     throw new MypyToolException("Mypy failed with code " + exitCode);
                 } else {
                     LOG.info("Mypy returned " + exitCode + ", but also reported issues");
@@ -334,38 +520,111 @@ public class MypyRunner {
             LOG.info("Command Line string: " + cmd.getCommandLineString());
             throw e;
         } catch (IOException e) {
+            if (processTracker.isCancelled()) {
+                throw new InterruptedIOException("Scan cancelled while reading the Mypy output");
+            }
+            checkTimedOut(cmd, timedOut, errorTail, Collections.emptyList());
             LOG.info("Command Line string: " + cmd.getCommandLineString());
             throw new MypyPluginParseException(e.getMessage(), e);
         } catch (ExecutionException e) {
             LOG.info("Command Line string: " + cmd.getCommandLineString());
             throw new MypyToolException("Error creating Mypy process", e);
+        } finally {
+            if (watchdog != null) {
+                watchdog.cancel(false);
+            }
+            if (process != null) {
+                processTracker.processFinished(process);
+            }
         }
     }
 
+    /**
+     * Stop the Mypy process, and its descendants, if it is still running once the scan timeout elapsed.
+     */
+    @Nullable
+    @SuppressWarnings("FutureReturnValueIgnored")
+    private static ScheduledFuture<?> startWatchdog(Process process, AtomicBoolean timedOut, int timeoutSeconds) {
+        if (timeoutSeconds <= 0) {
+            return null;
+        }
+        return AppExecutorUtil.getAppScheduledExecutorService().schedule(() -> {
+            if (process.isAlive()) {
+                timedOut.set(true);
+                LOG.warn("Mypy did not finish within " + timeoutSeconds + " s, stopping it");
+                ProcessTrees.terminateProcesses(List.of(process));
+            }
+        }, timeoutSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Fail a run stopped by the watchdog, keeping the issues Mypy streamed until then.
+     */
+    private static void checkTimedOut(GeneralCommandLine cmd, AtomicBoolean timedOut, @Nullable StreamTail errorTail,
+                                      List<Issue> issues) {
+        if (!timedOut.get()) {
+            return;
+        }
+        LOG.info("Command Line string: " + cmd.getCommandLineString());
+        String errorOutput = errorTail == null ? "" : errorTail.getText(STREAM_TAIL_TIMEOUT_MILLIS);
+        if (!errorOutput.isEmpty()) {
+            LOG.info("Mypy error output before the timeout:\n" + errorOutput);
+        }
+        throw new MypyTimeoutException("Mypy did not finish in time and has been stopped", issues);
+    }
+
     @NotNull
     public static List<Issue> parseMypyOutput(@NotNull InputStream inputStream) throws IOException {
-        ArrayList<Issue> issues = new ArrayList<>();
-        BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream, UTF_8));
-        String rawLine;
-        Pattern typePattern = Pattern.compile(TYPE_RE);
-        while ((rawLine = bufferedReader.readLine()) != null) {
-            if (rawLine.matches(ISSUE_RE)) {
-                Matcher matcher = typePattern.matcher(rawLine);
-                if (matcher.find()) {
-                    int typeIndexStart = matcher.start();
-                    String[] splitPosition = rawLine.substring(0, typeIndexStart - 1).split(":", -1);
-                    String path = splitPosition[0].trim();
-                    int line = splitPosition.length > 1 ? Integer.parseInt(splitPosition[1].trim()) : 1;
-                    // Mypy uses 1-based column numbers, IntelliJ expects 0-based
-                    int column = splitPosition.length > 2 ? Integer.parseInt(splitPosition[2].trim()) - 1 : 1;
-                    String[] splitError = rawLine.substring(typeIndexStart).split(":", 2);
-                    SeverityLevel severityLevel = SeverityLevel.valueOf(splitError[0].trim().toUpperCase());
-                    String message = splitError[1].trim();
-                    issues.add(new Issue(path, line, column, severityLevel, message));
-                }
+        return MypyTextOutputParser.parse(inputStream);
+    }
+
+    /**
+     * Parse the output of Mypy.
+     *
+     * @param inputStream the standard output of Mypy.
+     * @param json        whether Mypy has been run with {@code --output json}.
+     * @return the issues reported by Mypy.
+     */
+    @NotNull
+    public static List<Issue> parseMypyOutput(@NotNull InputStream inputStream, boolean json) throws IOException {
+        return json ? MypyJsonOutputParser.parse(inputStream) : parseMypyOutput(inputStream);
+    }
+
+    /**
+     * Check whether the arguments configured by the user select the JSON output of Mypy 1.11 and later, which the
+     * text parser can not read.
+     *
+     * @param mypyArguments the additional arguments of Mypy.
+     * @return true if the output must be parsed as JSON.
+     */
+    static boolean isJsonOutputRequested(String mypyArguments) {
+        String[] arguments = mypyArguments.trim().split("\\s+");
+        for (int i = 0; i < arguments.length; i++) {
+            String argument = arguments[i];
+            if (argument.equals("--output=json") || argument.equals("-Ojson")) {
+                return true;
             }
+            if ((argument.equals("--output") || argument.equals("-O"))
+                    && i + 1 < arguments.length && arguments[i + 1].equals("json")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compare a version as printed by {@code mypy -V} with the given release.
+     *
+     * @return true if the version is at least {@code major.minor}, false if older or unknown.
+     */
+    static boolean isMypyVersionAtLeast(String mypyVersion, int major, int minor) {
+        Matcher matcher = VERSION_PATTERN.matcher(mypyVersion);
+        if (!matcher.find()) {
+            return false;
         }
-        return issues;
+        int versionMajor = Integer.parseInt(matcher.group(1));
+        int versionMinor = Integer.parseInt(matcher.group(2));
+        return versionMajor > major || (versionMajor == major && versionMinor >= minor);
     }
 
     private static GeneralCommandLine getMypyCommandLine(Project project, String mypyPath) {
@@ -389,7 +648,7 @@ public class MypyRunner {
         return null;
     }
 
-    private static void injectEnvironmentVariables(Project project, GeneralCommandLine cmd) {
+    static void injectEnvironmentVariables(Project project, GeneralCommandLine cmd) {
         VirtualFile interpreterFile = getInterpreterFile(project);
         Map<String, String> extraEnv = null;
         Map<String, String> systemEnv = System.getenv();
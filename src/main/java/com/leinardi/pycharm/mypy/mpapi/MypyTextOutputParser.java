@@ -0,0 +1,278 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.mpapi;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Streaming parser of the text output of Mypy, one diagnostic per line:
+ * <pre>
+ * path[:line[:column[:end_line:end_column]]]: error|warning|note: message[  [code]]
+ * </pre>
+ * The lines are scanned straight from the bytes read from the process: the severity marker is located first, then
+ * the numeric fields are parsed right to left from it, so that paths containing colons (e.g. Windows drive letters)
+ * are supported. Only the message is decoded for each line, paths and error codes are interned.
+ */
+final class MypyTextOutputParser {
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POSITION_FIELDS = 4;
+    private static final byte[] ERROR_MARKER = ": error:".getBytes(UTF_8);
+    private static final byte[] WARNING_MARKER = ": warning:".getBytes(UTF_8);
+    private static final byte[] NOTE_MARKER = ": note:".getBytes(UTF_8);
+
+    private final InputStream inputStream;
+    private final List<Issue> issues = new ArrayList<>();
+    private final InternTable paths = new InternTable();
+    private final InternTable codes = new InternTable();
+    private final int[] positionFields = new int[MAX_POSITION_FIELDS];
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+    private MypyTextOutputParser(@NotNull final InputStream inputStream) {
+        this.inputStream = inputStream;
+    }
+
+    @NotNull
+    static List<Issue> parse(@NotNull final InputStream inputStream) throws IOException {
+        return new MypyTextOutputParser(inputStream).parse();
+    }
+
+    private List<Issue> parse() throws IOException {
+        int lineStart = 0;
+        int scanned = 0;
+        int limit = 0;
+        while (true) {
+            int lineEnd = indexOf((byte) '\n', scanned, limit);
+            if (lineEnd >= 0) {
+                parseLine(lineStart, lineEnd);
+                lineStart = lineEnd + 1;
+                scanned = lineStart;
+                continue;
+            }
+            if (lineStart > 0) {
+                System.arraycopy(buffer, lineStart, buffer, 0, limit - lineStart);
+                limit -= lineStart;
+                lineStart = 0;
+            }
+            if (limit == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            scanned = limit;
+            int read = inputStream.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                if (limit > 0) {
+                    parseLine(0, limit);
+                }
+                return issues;
+            }
+            limit += read;
+        }
+    }
+
+    private void parseLine(final int start, final int end) {
+        int lineEnd = end > start && buffer[end - 1] == '\r' ? end - 1 : end;
+        int from = skipWhitespace(start, lineEnd);
+        for (int i = from + 1; i < lineEnd; i++) {
+            if (buffer[i] != ':' || i + 1 >= lineEnd || buffer[i + 1] != ' ') {
+                continue;
+            }
+            if (startsWith(ERROR_MARKER, i, lineEnd)) {
+                addIssue(from, i, SeverityLevel.ERROR, i + ERROR_MARKER.length, lineEnd);
+                return;
+            } else if (startsWith(WARNING_MARKER, i, lineEnd)) {
+                addIssue(from, i, SeverityLevel.WARNING, i + WARNING_MARKER.length, lineEnd);
+                return;
+            } else if (startsWith(NOTE_MARKER, i, lineEnd)) {
+                addIssue(from, i, SeverityLevel.NOTE, i + NOTE_MARKER.length, lineEnd);
+                return;
+            }
+        }
+    }
+
+    private void addIssue(final int locationStart,
+                          final int locationEnd,
+                          final SeverityLevel severityLevel,
+                          final int messageStart,
+                          final int messageEnd) {
+        int pathEnd = locationEnd;
+        int fieldCount = 0;
+        // numeric fields, right to left: [:line[:column[:end_line:end_column]]]
+        while (fieldCount < MAX_POSITION_FIELDS) {
+            int digitsStart = pathEnd;
+            int value = 0;
+            int multiplier = 1;
+            while (digitsStart > locationStart && isDigit(buffer[digitsStart - 1])) {
+                digitsStart--;
+                value += (buffer[digitsStart] - '0') * multiplier;
+                multiplier *= 10;
+            }
+            if (digitsStart == pathEnd || digitsStart - 1 <= locationStart || buffer[digitsStart - 1] != ':') {
+                break;
+            }
+            positionFields[fieldCount++] = value;
+            pathEnd = digitsStart - 1;
+        }
+        pathEnd = trimEnd(locationStart, pathEnd);
+        if (pathEnd == locationStart) {
+            return;
+        }
+
+        // the fields have been collected right to left
+        int line = fieldCount > 0 ? positionFields[fieldCount - 1] : 1;
+        // Mypy uses 1-based column numbers, IntelliJ expects 0-based
+        int column = fieldCount > 1 ? positionFields[fieldCount - 2] - 1 : 1;
+        int endLine = fieldCount > 3 ? positionFields[fieldCount - 3] : -1;
+        // The end column is inclusive and 1-based, i.e. exclusive and 0-based
+        int endColumn = fieldCount > 3 ? positionFields[fieldCount - 4] : -1;
+
+        int start = skipWhitespace(messageStart, messageEnd);
+        int end = trimEnd(start, messageEnd);
+        issues.add(new Issue(paths.intern(buffer, locationStart, pathEnd), line, column, severityLevel,
+                new String(buffer, start, end - start, UTF_8), findCode(start, end), endLine, endColumn));
+    }
+
+    /**
+     * Find the error code at the end of the message, e.g. {@code arg-type} in {@code ...  [arg-type]}.
+     */
+    @Nullable
+    private String findCode(final int messageStart, final int messageEnd) {
+        if (messageEnd - messageStart < 3 || buffer[messageEnd - 1] != ']') {
+            return null;
+        }
+        int codeStart = messageEnd - 1;
+        while (codeStart > messageStart && isCodeCharacter(buffer[codeStart - 1])) {
+            codeStart--;
+        }
+        if (codeStart == messageEnd - 1 || codeStart - 2 < messageStart || buffer[codeStart - 1] != '['
+                || !isWhitespace(buffer[codeStart - 2])) {
+            return null;
+        }
+        return codes.intern(buffer, codeStart, messageEnd - 1);
+    }
+
+    private boolean startsWith(final byte[] prefix, final int offset, final int end) {
+        if (end - offset < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(final byte value, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int skipWhitespace(final int from, final int to) {
+        int i = from;
+        while (i < to && isWhitespace(buffer[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    private int trimEnd(final int from, final int to) {
+        int i = to;
+        while (i > from && isWhitespace(buffer[i - 1])) {
+            i--;
+        }
+        return i;
+    }
+
+    private static boolean isDigit(final byte value) {
+        return value >= '0' && value <= '9';
+    }
+
+    private static boolean isWhitespace(final byte value) {
+        return value == ' ' || value == '\t' || value == '\r';
+    }
+
+    private static boolean isCodeCharacter(final byte value) {
+        return (value >= 'a' && value <= 'z') || isDigit(value) || value == '-' || value == '_';
+    }
+
+    /**
+     * Open addressing table returning the same string for the same bytes, without decoding them again.
+     */
+    private static final class InternTable {
+        private byte[][] keys = new byte[64][];
+        private String[] values = new String[64];
+        private int size;
+
+        String intern(final byte[] bytes, final int from, final int to) {
+            int mask = keys.length - 1;
+            int index = hash(bytes, from, to) & mask;
+            while (keys[index] != null) {
+                byte[] key = keys[index];
+                if (Arrays.equals(key, 0, key.length, bytes, from, to)) {
+                    return values[index];
+                }
+                index = (index + 1) & mask;
+            }
+            byte[] key = Arrays.copyOfRange(bytes, from, to);
+            String value = new String(key, UTF_8);
+            keys[index] = key;
+            values[index] = value;
+            if (++size * 2 > keys.length) {
+                rehash();
+            }
+            return value;
+        }
+
+        private void rehash() {
+            byte[][] oldKeys = keys;
+            String[] oldValues = values;
+            keys = new byte[oldKeys.length * 2][];
+            values = new String[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int index = hash(oldKeys[i], 0, oldKeys[i].length) & mask;
+                    while (keys[index] != null) {
+                        index = (index + 1) & mask;
+                    }
+                    keys[index] = oldKeys[i];
+                    values[index] = oldValues[i];
+                }
+            }
+        }
+
+        private static int hash(final byte[] bytes, final int from, final int to) {
+            int hash = 0;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
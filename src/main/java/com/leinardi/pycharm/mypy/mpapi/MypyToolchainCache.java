@@ -0,0 +1,198 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.mpapi;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.projectRoots.ProjectJdkTable;
+import com.intellij.openapi.projectRoots.Sdk;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.util.messages.MessageBusConnection;
+import com.jetbrains.python.packaging.PyPackage;
+import com.jetbrains.python.packaging.PyPackageManager;
+import com.leinardi.pycharm.mypy.MypyConfigService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the resolution and the validation of the Mypy executable, which otherwise spawn a process each.
+ * <p>
+ * The validation of an executable is keyed by its path and modification time, everything is dropped when the project
+ * interpreter, the SDK table, the plugin configuration or the executable itself change. Failed lookups are not
+ * cached, so that installing Mypy is noticed.
+ */
+@Service
+public final class MypyToolchainCache implements Disposable {
+    private static final Logger LOG = Logger.getInstance(MypyToolchainCache.class);
+
+    private final Project project;
+    private final Map<String, String> mypyPaths = new ConcurrentHashMap<>();
+    private final Map<String, Validation> validations = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> mypyInstalled = new ConcurrentHashMap<>();
+
+    public MypyToolchainCache(@NotNull final Project project) {
+        this.project = project;
+        MessageBusConnection connection = project.getMessageBus().connect(this);
+        connection.subscribe(ModuleRootListener.TOPIC, new ModuleRootListener() {
+            @Override
+            public void rootsChanged(@NotNull ModuleRootEvent event) {
+                invalidate();
+            }
+        });
+        connection.subscribe(ProjectJdkTable.JDK_TABLE_TOPIC, new ProjectJdkTable.Listener() {
+            @Override
+            public void jdkAdded(@NotNull Sdk jdk) {
+                invalidate();
+            }
+
+            @Override
+            public void jdkRemoved(@NotNull Sdk jdk) {
+                invalidate();
+            }
+
+            @Override
+            public void jdkNameChanged(@NotNull Sdk jdk, @NotNull String previousName) {
+                invalidate();
+            }
+        });
+        connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                for (VFileEvent event : events) {
+                    if (mypyPaths.containsValue(FileUtil.toSystemDependentName(event.getPath()))) {
+                        invalidate();
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    public static MypyToolchainCache getInstance(@NotNull final Project project) {
+        return project.getService(MypyToolchainCache.class);
+    }
+
+    /**
+     * Get the Mypy executable configured for the project, or auto-detected for its interpreter.
+     *
+     * @return the path of the Mypy executable, or an empty string if not found.
+     */
+    @NotNull
+    public String getMypyPath() {
+        Sdk projectSdk = MypyRunner.getProjectSdk(project);
+        MypyConfigService mypyConfigService = MypyConfigService.getInstance(project);
+        String key = (projectSdk == null ? "" : projectSdk.getHomePath()) + File.pathSeparator
+                + (mypyConfigService == null ? "" : mypyConfigService.getCustomMypyPath());
+        String mypyPath = mypyPaths.get(key);
+        if (mypyPath == null) {
+            mypyPath = MypyRunner.getMypyPath(project, true);
+            // a failed lookup is not cached: no file event would invalidate it once Mypy gets installed
+            if (!mypyPath.isEmpty()) {
+                mypyPaths.put(key, mypyPath);
+            }
+        }
+        return mypyPath;
+    }
+
+    public boolean isMypyPathValid(@NotNull final String mypyPath) {
+        return validate(mypyPath).valid;
+    }
+
+    /**
+     * @return the output of {@code mypy -V}, or an empty string if the executable is not valid.
+     */
+    @NotNull
+    public String getMypyVersion(@NotNull final String mypyPath) {
+        return validate(mypyPath).version;
+    }
+
+    /**
+     * Check whether the Mypy package is installed in an interpreter.
+     *
+     * @return null if the installed packages are not known yet.
+     */
+    @Nullable
+    public Boolean isMypyInstalled(@NotNull final Sdk sdk) {
+        String key = String.valueOf(sdk.getHomePath());
+        Boolean installed = mypyInstalled.get(key);
+        if (installed == null) {
+            List<PyPackage> packages = PyPackageManager.getInstance(sdk).getPackages();
+            if (packages != null) {
+                installed = packages.stream().anyMatch(it -> MypyRunner.MYPY_PACKAGE_NAME.equals(it.getName()));
+                if (installed) {
+                    mypyInstalled.put(key, true);
+                }
+            }
+        }
+        return installed;
+    }
+
+    public void invalidate() {
+        LOG.debug("Invalidating the Mypy toolchain cache");
+        mypyPaths.clear();
+        validations.clear();
+        mypyInstalled.clear();
+    }
+
+    @Override
+    public void dispose() {
+        invalidate();
+    }
+
+    private Validation validate(final String mypyPath) {
+        if (mypyPath.isEmpty()) {
+            return Validation.INVALID;
+        }
+        String absoluteMypyPath = new File(mypyPath).isAbsolute()
+                ? mypyPath
+                : project.getBasePath() + File.separator + mypyPath;
+        File mypyFile = new File(absoluteMypyPath);
+        if (!mypyFile.isFile()) {
+            LOG.warn("Error while checking Mypy path " + absoluteMypyPath + ": not exists or not a file path");
+            return Validation.INVALID;
+        }
+        String key = absoluteMypyPath + File.pathSeparator + mypyFile.lastModified();
+        return validations.computeIfAbsent(key, ignored -> {
+            String version = MypyRunner.readMypyVersion(project, absoluteMypyPath);
+            return version == null ? Validation.INVALID : new Validation(true, version);
+        });
+    }
+
+    private static final class Validation {
+        private static final Validation INVALID = new Validation(false, "");
+
+        private final boolean valid;
+        private final String version;
+
+        Validation(final boolean valid, final String version) {
+            this.valid = valid;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.mpapi;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Maps the paths reported by Mypy to the scanned files.
+ * <p>
+ * All the paths a scanned file may be reported with (absolute, relative to the working directory, through symbolic
+ * links, or the path of its shadow copy) are computed once when the resolver is created, so that resolving the path
+ * of an issue never touches the file system. The resolution of each distinct path is memoized as well.
+ *
+ * @param <T> the type of the scanned files.
+ */
+final class PathResolver<T> {
+    private static final Logger LOG = Logger.getInstance(PathResolver.class);
+
+    private final String baseDir;
+    private final Map<String, T> filesByPath = new HashMap<>();
+    private final Map<String, T> resolvedPaths = new HashMap<>();
+    private final Map<String, Integer> unmappedPaths = new LinkedHashMap<>();
+    private int unmappedIssueCount;
+
+    /**
+     * @param baseDir      the working directory of Mypy, or null if unknown.
+     * @param filesByPath  the scanned files, by absolute path.
+     * @param aliases      other paths of the scanned files, e.g. of their shadow copies, by absolute path.
+     * @param resolveLinks whether to also map the real paths of the scanned files, through symbolic links.
+     */
+    PathResolver(@Nullable final String baseDir,
+                 @NotNull final Map<String, T> filesByPath,
+                 @NotNull final Map<String, String> aliases,
+                 final boolean resolveLinks) {
+        this.baseDir = baseDir;
+        filesByPath.forEach((path, file) -> {
+            this.filesByPath.put(path, file);
+            this.filesByPath.putIfAbsent(normalise(path), file);
+            if (resolveLinks) {
+                String realPath = realPath(path);
+                if (realPath != null) {
+                    this.filesByPath.putIfAbsent(realPath, file);
+                }
+            }
+        });
+        aliases.forEach((alias, path) -> {
+            T file = filesByPath.get(path);
+            if (file != null) {
+                this.filesByPath.putIfAbsent(normalise(alias), file);
+            }
+        });
+    }
+
+    /**
+     * @param path the path of an issue, as reported by Mypy.
+     * @return the scanned file, or null if the issue is not in any of them.
+     */
+    @Nullable
+    T resolve(@NotNull final String path) {
+        T file = resolvedPaths.get(path);
+        if (file == null && !resolvedPaths.containsKey(path)) {
+            file = lookUp(path);
+            resolvedPaths.put(path, file);
+        }
+        if (file == null) {
+            unmappedIssueCount++;
+            unmappedPaths.merge(path, 1, Integer::sum);
+        }
+        return file;
+    }
+
+    /**
+     * @return the number of issues whose path is not a scanned file.
+     */
+    int getUnmappedIssueCount() {
+        return unmappedIssueCount;
+    }
+
+    /**
+     * @return the number of issues by path not mapped to a scanned file, e.g. modules followed by the daemon.
+     */
+    @NotNull
+    Map<String, Integer> getUnmappedPaths() {
+        return unmappedPaths;
+    }
+
+    @Nullable
+    private T lookUp(final String path) {
+        if (baseDir != null) {
+            T file = filesByPath.get(normalise(withTrailingSeparator(baseDir) + path));
+            if (file != null) {
+                return file;
+            }
+        }
+        T file = filesByPath.get(path);
+        return file != null ? file : filesByPath.get(normalise(path));
+    }
+
+    private static String normalise(final String path) {
+        try {
+            return Paths.get(path).normalize().toString();
+        } catch (InvalidPathException e) {
+            return path;  // cannot normalize
+        }
+    }
+
+    private static String withTrailingSeparator(final String path) {
+        return path.endsWith(File.separator) ? path : path + File.separator;
+    }
+
+    @Nullable
+    private static String realPath(final String path) {
+        try {
+            Path realPath = Paths.get(path).toRealPath();
+            return realPath.toString();
+        } catch (IOException | InvalidPathException | SecurityException e) {
+            LOG.debug("Unable to resolve the real path of " + path, e);
+            return null;
+        }
+    }
+}
@@ -16,34 +16,47 @@
 
 package com.leinardi.pycharm.mypy.mpapi;
 
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
-import com.intellij.psi.PsiElement;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
-import com.intellij.psi.PsiInvalidElementAccessException;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
 import com.intellij.util.ThrowableRunnable;
 import com.leinardi.pycharm.mypy.checker.Problem;
+import com.leinardi.pycharm.mypy.checker.ProblemTable;
+import com.leinardi.pycharm.mypy.exception.MypyPluginException;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.File;
-import java.nio.file.InvalidPathException;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
 
 public class ProcessResultsThread implements ThrowableRunnable<RuntimeException> {
 
+    /**
+     * The width of a tab in the columns reported by Mypy.
+     */
+    public static final int DEFAULT_TAB_WIDTH = 4;
     private static final Logger LOG = Logger.getInstance(ProcessResultsThread.class);
+    private static final Key<LineIndex> LINE_INDEX = Key.create("mypy.lineIndex");
 
     private final boolean suppressErrors;
     private final int tabWidth;
-    private final String baseDir;
     private final List<Issue> errors;
-    private final Map<String, PsiFile> fileNamesToPsiFiles;
+    private final PathResolver<PsiFile> pathResolver;
 
-    private final Map<PsiFile, List<Problem>> problems = new HashMap<>();
+    private final ProblemTable problems = new ProblemTable();
 
     private static final class Position {
         private final boolean afterEndOfLine;
@@ -61,10 +74,6 @@ public class ProcessResultsThread implements ThrowableRunnable<RuntimeException>
             this.offset = offset;
             this.afterEndOfLine = afterEndOfLine;
         }
-
-        private PsiElement element(final PsiFile psiFile) {
-            return psiFile.findElementAt(offset);
-        }
     }
 
     public ProcessResultsThread(final boolean suppressErrors,
@@ -72,96 +81,178 @@ public class ProcessResultsThread implements ThrowableRunnable<RuntimeException>
                                 final String baseDir,
                                 final List<Issue> errors,
                                 final Map<String, PsiFile> fileNamesToPsiFiles) {
+        this(suppressErrors, tabWidth, baseDir, errors, fileNamesToPsiFiles, Collections.emptyMap());
+    }
+
+    /**
+     * @param shadowFilesToFileNames the paths of the shadow copies of the files, by path of the shadow copy.
+     */
+    public ProcessResultsThread(final boolean suppressErrors,
+                                final int tabWidth,
+                                final String baseDir,
+                                final List<Issue> errors,
+                                final Map<String, PsiFile> fileNamesToPsiFiles,
+                                final Map<String, String> shadowFilesToFileNames) {
         this.suppressErrors = suppressErrors;
         this.tabWidth = tabWidth;
-        this.baseDir = baseDir;
         this.errors = errors;
-        this.fileNamesToPsiFiles = fileNamesToPsiFiles;
+        this.pathResolver = new PathResolver<>(baseDir, fileNamesToPsiFiles, shadowFilesToFileNames, true);
     }
 
     @Override
     public void run() {
-        final Map<PsiFile, List<Integer>> lineLengthCachesByFile = new HashMap<>();
+        groupByFile().forEach((psiFile, issues) -> addProblems(psiFile, processFile(psiFile, issues)));
+    }
 
-        for (final Issue event : errors) {
-            final PsiFile psiFile = fileNamesToPsiFiles.get(filenameFrom(event));
-            if (psiFile == null) {
-                LOG.info("Could not find mapping for file: " + event.getPath() + " in " + fileNamesToPsiFiles);
-                return;
+    /**
+     * Process the issues file by file, in parallel, each file in its own non-blocking read action: it is restarted
+     * if a write action comes in meanwhile, so that writers are never blocked for the whole result set.
+     *
+     * @param executor      runs the files.
+     * @param cancelled     tells whether the scan has been cancelled, to stop processing the files.
+     * @param fileProcessed receives the problems of each file as soon as they are found.
+     * @throws InterruptedException if the scan has been cancelled.
+     */
+    public void runInParallel(@NotNull final ExecutorService executor,
+                              @NotNull final BooleanSupplier cancelled,
+                              @NotNull final BiConsumer<PsiFile, List<Problem>> fileProcessed)
+            throws InterruptedException {
+        List<Future<?>> futures = new ArrayList<>();
+        groupByFile().forEach((psiFile, issues) -> futures.add(executor.submit(() -> {
+            List<Problem> fileProblems = ReadAction.nonBlocking(() -> processFile(psiFile, issues))
+                    .expireWhen(cancelled)
+                    .executeSynchronously();
+            fileProcessed.accept(psiFile, addProblems(psiFile, fileProblems));
+        })));
+        try {
+            for (Future<?> future : futures) {
+                future.get();
             }
-
-            List<Integer> lineLengthCache = lineLengthCachesByFile.get(psiFile);
-            if (lineLengthCache == null) {
-                // we cache the offset of each line as it is created, so as to
-                // avoid retreating ground we've already covered.
-                lineLengthCache = new ArrayList<>();
-                lineLengthCache.add(0); // line 1 is offset 0
-
-                lineLengthCachesByFile.put(psiFile, lineLengthCache);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ProcessCanceledException) {
+                throw new InterruptedException("Scan cancelled while processing the Mypy results");
             }
-
-            processEvent(psiFile, lineLengthCache, event);
+            throw new MypyPluginException("Error while processing the Mypy results", e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
         }
     }
 
-    private String filenameFrom(final Issue issue) {
-        String path = normalisePath(withTrailingSeparator(baseDir) + issue.getPath());
-        if (new File(path).exists()) {
-            return path;
-        } else {
-            return normalisePath(issue.getPath());
+    /**
+     * Resolve the files of the issues, which does not need the read lock.
+     */
+    private Map<PsiFile, List<Issue>> groupByFile() {
+        Map<PsiFile, List<Issue>> issuesByFile = new LinkedHashMap<>();
+        for (final Issue event : errors) {
+            final PsiFile psiFile = pathResolver.resolve(event.getPath());
+            if (psiFile != null) {
+                issuesByFile.computeIfAbsent(psiFile, file -> new ArrayList<>()).add(event);
+            }
+        }
+        if (pathResolver.getUnmappedIssueCount() > 0 && LOG.isDebugEnabled()) {
+            LOG.debug(pathResolver.getUnmappedIssueCount() + " issues not in the scanned files, by path: "
+                    + pathResolver.getUnmappedPaths());
         }
+        return issuesByFile;
     }
 
-    private String normalisePath(String prefixedFileName) {
-        try {
-            return Paths.get(prefixedFileName).normalize().toString();
-        } catch (InvalidPathException e) {
-            return prefixedFileName;  // cannot normalize
+    private List<Problem> processFile(final PsiFile psiFile, final List<Issue> issues) {
+        CharSequence text = textOf(psiFile);
+        LineIndex lineIndex = lineIndexFor(psiFile, text);
+        SmartPsiElementPointer<PsiFile> file = SmartPointerManager.createPointer(psiFile);
+        List<Problem> fileProblems = new ArrayList<>(issues.size());
+        for (Issue event : issues) {
+            processEvent(file, lineIndex, text, event, fileProblems);
         }
+        return fileProblems;
     }
 
-    private String withTrailingSeparator(final String path) {
-        if (path != null && !path.endsWith(File.separator)) {
-            return path + File.separator;
-        }
-        return path;
+    /**
+     * @return the number of issues dropped because their path is not one of the scanned files.
+     */
+    public int getUnmappedIssueCount() {
+        return pathResolver.getUnmappedIssueCount();
     }
 
-    private void processEvent(final PsiFile psiFile, final List<Integer> lineLengthCache, final Issue event) {
-        //        if (additionalChecksFail(psiFile, event)) {
-        //            return;
-        //        }
+    /**
+     * Map a Mypy position to an offset in the current text of a file, e.g. for a problem found in an older version
+     * of the file. Must be called in a read action.
+     *
+     * @param psiFile the file.
+     * @param line    the 1-based line, or 0 if the column is an offset in the file.
+     * @param column  the column in the line.
+     * @return the offset, within the text of the file.
+     */
+    public static int findOffset(@NotNull final PsiFile psiFile, final int line, final int column) {
+        CharSequence text = textOf(psiFile);
+        return lineIndexFor(psiFile, text).getOffset(text, line, column, DEFAULT_TAB_WIDTH);
+    }
 
-        final Position position = findPosition(lineLengthCache, event, psiFile.textToCharArray());
-        final PsiElement victim = position.element(psiFile);
+    /**
+     * The text the PSI of the file has been built from, without copying it.
+     */
+    private static CharSequence textOf(final PsiFile psiFile) {
+        PsiDocumentManager documentManager = PsiDocumentManager.getInstance(psiFile.getProject());
+        Document document = documentManager.getCachedDocument(psiFile);
+        if (document == null) {
+            return psiFile.getViewProvider().getContents();
+        }
+        return documentManager.isCommitted(document)
+                ? document.getImmutableCharSequence()
+                : documentManager.getLastCommittedText(document);
+    }
 
-        if (victim != null) {
-            addProblemTo(victim, psiFile, event, position.afterEndOfLine);
+    /**
+     * Get the line index of the file, kept in the file until its next modification so that the next scans, and
+     * the issues restored from the issue store, reuse it.
+     */
+    private static LineIndex lineIndexFor(final PsiFile psiFile, final CharSequence text) {
+        long modificationStamp = psiFile.getModificationStamp();
+        LineIndex lineIndex = psiFile.getUserData(LINE_INDEX);
+        if (lineIndex != null && lineIndex.getModificationStamp() == modificationStamp
+                && lineIndex.getTextLength() == text.length()) {
+            return lineIndex;
+        }
+        PsiDocumentManager documentManager = PsiDocumentManager.getInstance(psiFile.getProject());
+        Document document = documentManager.getCachedDocument(psiFile);
+        if (document != null && documentManager.isCommitted(document) && document.getLineCount() > 0
+                && document.getTextLength() == text.length()) {
+            int[] lineStarts = new int[document.getLineCount()];
+            for (int line = 0; line < lineStarts.length; line++) {
+                lineStarts[line] = document.getLineStartOffset(line);
+            }
+            lineIndex = LineIndex.of(text, lineStarts, modificationStamp);
         } else {
-            addProblemTo(psiFile, psiFile, event, false);
-            LOG.debug("Couldn't find victim for error: " + event.getPath() + "(" + event.getLine() + ":"
-                    + event.getColumn() + ") " + event.getMessage());
+            lineIndex = LineIndex.of(text, modificationStamp);
         }
+        psiFile.putUserData(LINE_INDEX, lineIndex);
+        return lineIndex;
     }
 
-    private void addProblemTo(final PsiElement victim,
-                              final PsiFile psiFile,
-                              @NotNull final Issue issue,
-                              final boolean afterEndOfLine) {
-        try {
-            addProblem(psiFile,
-                    new Problem(
-                            victim,
-                            issue.getMessage(),
-                            issue.getSeverityLevel(),
-                            issue.getLine(),
-                            issue.getColumn(),
-                            afterEndOfLine,
-                            suppressErrors));
-        } catch (PsiInvalidElementAccessException e) {
-            LOG.warn("Element access failed", e);
-        }
+    private void processEvent(final SmartPsiElementPointer<PsiFile> file,
+                              final LineIndex lineIndex,
+                              final CharSequence text,
+                              final Issue event,
+                              final List<Problem> fileProblems) {
+        //        if (additionalChecksFail(psiFile, event)) {
+        //            return;
+        //        }
+
+        final Position position = findPosition(lineIndex, text, event);
+        // the element is only looked up when the problem is annotated
+        fileProblems.add(
+                new Problem(
+                        file,
+                        position.offset,
+                        lineIndex.getModificationStamp(),
+                        event.getMessage(),
+                        event.getSeverityLevel(),
+                        event.getLine(),
+                        event.getColumn(),
+                        event.getEndLine(),
+                        event.getEndColumn(),
+                        position.afterEndOfLine,
+                        suppressErrors));
     }
 
     //    private boolean additionalChecksFail(final PsiFile psiFile, final Issue event) {
@@ -174,77 +265,34 @@ public class ProcessResultsThread implements ThrowableRunnable<RuntimeException>
     //    }
 
     @NotNull
-    private Position findPosition(final List<Integer> lineLengthCache, final Issue event, final char[] text) {
-        if (event.getLine() == 0) {
-            return Position.at(event.getColumn());
-        } else if (event.getLine() <= lineLengthCache.size()) {
-            return Position.at(lineLengthCache.get(event.getLine() - 1) + event.getColumn());
-        } else {
-            return searchFromEndOfCachedData(lineLengthCache, event, text);
-        }
+    private Position findPosition(final LineIndex lineIndex, final CharSequence text, final Issue event) {
+        int offset = lineIndex.getOffset(text, event.getLine(), event.getColumn(), tabWidth);
+        // an issue at the start of a blank or indented line is rendered after the end of the line
+        boolean afterEndOfLine = event.getLine() > 0 && event.getColumn() == 0 && offset < text.length()
+                && Character.isWhitespace(text.charAt(offset));
+        return Position.at(offset, afterEndOfLine);
     }
 
+    /**
+     * @return a view of the problems found, by file.
+     */
     @NotNull
-    private Position searchFromEndOfCachedData(final List<Integer> lineLengthCache,
-                                               final Issue event,
-                                               final char[] text) {
-        final Position position;
-        int offset = lineLengthCache.get(lineLengthCache.size() - 1);
-        boolean afterEndOfLine = false;
-        int line = lineLengthCache.size();
-
-        int column = 0;
-        for (int i = offset; i < text.length; ++i) {
-            final char character = text[i];
-
-            // for linefeeds we need to handle CR, LF and CRLF,
-            // hence we accept either and only trigger a new
-            // line on the LF of CRLF.
-            final char nextChar = nextCharacter(text, i);
-            if (character == '\n' || (character == '\r' && nextChar != '\n')) {
-                ++line;
-                ++offset;
-                lineLengthCache.add(offset);
-                column = 0;
-            } else if (character == '\t') {
-                column += tabWidth;
-                ++offset;
-            } else {
-                ++column;
-                ++offset;
-            }
-
-            if (event.getLine() == line && event.getColumn() == column) {
-                if (column == 0 && Character.isWhitespace(nextChar)) {
-                    afterEndOfLine = true;
-                }
-                break;
-            }
-        }
-
-        position = Position.at(offset, afterEndOfLine);
-        return position;
-    }
-
-    private char nextCharacter(final char[] text, final int i) {
-        if ((i + 1) < text.length) {
-            return text[i + 1];
-        }
-        return '\0';
+    public Map<PsiFile, List<Problem>> getProblems() {
+        problems.trimToSize();
+        return problems.asMap();
     }
 
-    @NotNull
-    public Map<PsiFile, List<Problem>> getProblems() {
-        return Collections.unmodifiableMap(problems);
+    /**
+     * @return the store of the problems found.
+     */
+    public ProblemTable getProblemTable() {
+        return problems;
     }
 
-    private void addProblem(final PsiFile psiFile, final Problem problem) {
-        List<Problem> problemsForFile = problems.get(psiFile);
-        if (problemsForFile == null) {
-            problemsForFile = new ArrayList<>();
-            problems.put(psiFile, problemsForFile);
+    private List<Problem> addProblems(final PsiFile psiFile, final List<Problem> fileProblems) {
+        if (fileProblems.isEmpty()) {
+            return fileProblems;
         }
-
-        problemsForFile.add(problem);
+        return problems.add(psiFile, fileProblems);
     }
 }
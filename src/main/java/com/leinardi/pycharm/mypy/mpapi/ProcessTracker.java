@@ -0,0 +1,48 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.mpapi;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Receives the Mypy processes started by a scan, so that they can be destroyed when the scan is cancelled.
+ */
+public interface ProcessTracker {
+    ProcessTracker NONE = new ProcessTracker() {
+        @Override
+        public void processStarted(@NotNull Process process) {
+        }
+
+        @Override
+        public void processFinished(@NotNull Process process) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    void processStarted(@NotNull Process process);
+
+    void processFinished(@NotNull Process process);
+
+    /**
+     * @return true if the scan has been cancelled, in which case the output of its processes must be ignored.
+     */
+    boolean isCancelled();
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.mpapi;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops processes together with all their descendants, e.g. the interpreter started by the Mypy launcher script,
+ * which would otherwise keep running, and keep the output pipe of the scan open, once the launcher is destroyed.
+ */
+public final class ProcessTrees {
+    private static final Logger LOG = Logger.getInstance(ProcessTrees.class);
+    private static final long GRACE_PERIOD_MILLIS = 3000;
+
+    private ProcessTrees() {
+    }
+
+    /**
+     * Ask the processes and their descendants to terminate (SIGTERM), and kill the ones still alive after a grace
+     * period (SIGKILL). Does not block.
+     *
+     * @param roots the processes to stop.
+     * @return the number of processes stopped, completed once all of them exited or have been killed.
+     */
+    @NotNull
+    public static CompletableFuture<Integer> terminate(@NotNull final Collection<ProcessHandle> roots) {
+        List<ProcessHandle> tree = new ArrayList<>();
+        for (ProcessHandle root : roots) {
+            // collected before destroying the root, as its orphaned descendants are then reparented
+            root.descendants().forEach(tree::add);
+            tree.add(root);
+        }
+        tree.removeIf(process -> !process.isAlive());
+        if (tree.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+        tree.forEach(ProcessHandle::destroy);
+        return CompletableFuture.allOf(tree.stream().map(ProcessHandle::onExit).toArray(CompletableFuture[]::new))
+                .completeOnTimeout(null, GRACE_PERIOD_MILLIS, TimeUnit.MILLISECONDS)
+                .thenApply(ignored -> {
+                    int killed = 0;
+                    for (ProcessHandle process : tree) {
+                        if (process.isAlive() && process.destroyForcibly()) {
+                            killed++;
+                        }
+                    }
+                    LOG.info("Stopped " + tree.size() + " Mypy processes, " + killed + " of them killed after "
+                            + GRACE_PERIOD_MILLIS + " ms");
+                    return tree.size();
+                });
+    }
+
+    /**
+     * Same as {@link #terminate(Collection)}, for processes started by the plugin.
+     */
+    @NotNull
+    public static CompletableFuture<Integer> terminateProcesses(@NotNull final Collection<Process> processes) {
+        List<ProcessHandle> roots = new ArrayList<>();
+        for (Process process : processes) {
+            try {
+                roots.add(process.toHandle());
+            } catch (UnsupportedOperationException e) {
+                process.destroy();
+            }
+        }
+        return terminate(roots);
+    }
+}
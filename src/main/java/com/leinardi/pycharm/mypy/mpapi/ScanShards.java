@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.mpapi;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Splits the files of a scan in shards that can be checked by concurrent Mypy processes.
+ * <p>
+ * Files are grouped by the package of their Mypy module name, so that modules importing each other usually end up in
+ * the same shard. Starting from the top level packages, the largest group is split by its sub-packages until there
+ * are enough groups for the shards, e.g. the files of a project with a single top level package are grouped by
+ * sub-package. The groups are then distributed over the shards by decreasing size.
+ */
+final class ScanShards {
+    private ScanShards() {
+    }
+
+    /**
+     * @param filesToScan  the paths of the files to check.
+     * @param moduleNameOf gives the Mypy module name of a file.
+     * @param maxShards    the maximum number of shards.
+     * @return the shards, possibly a single one.
+     */
+    @NotNull
+    static List<Set<String>> partition(@NotNull final Set<String> filesToScan,
+                                       @NotNull final Function<String, String> moduleNameOf,
+                                       final int maxShards) {
+        List<Group> groups = new ArrayList<>();
+        Group root = new Group(0);
+        for (String file : filesToScan) {
+            root.modules.put(file, moduleNameOf.apply(file).split("\\."));
+        }
+        groups.add(root);
+        while (groups.size() < maxShards) {
+            Group largest = null;
+            List<Group> largestSplit = null;
+            for (Group group : groups) {
+                if (largest == null || group.modules.size() > largest.modules.size()) {
+                    List<Group> split = group.split();
+                    if (split.size() > 1) {
+                        largest = group;
+                        largestSplit = split;
+                    }
+                }
+            }
+            if (largest == null) {
+                break;
+            }
+            groups.remove(largest);
+            groups.addAll(largestSplit);
+        }
+        groups.sort(Comparator.comparingInt((Group group) -> group.modules.size()).reversed());
+
+        int shardCount = Math.max(1, Math.min(maxShards, groups.size()));
+        List<Set<String>> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new HashSet<>());
+        }
+        for (Group group : groups) {
+            shards.stream().min(Comparator.comparingInt(Set::size))
+                    .ifPresent(shard -> shard.addAll(group.modules.keySet()));
+        }
+        return shards;
+    }
+
+    /**
+     * Files whose module names share their first {@code depth} components.
+     */
+    private static final class Group {
+        private final int depth;
+        private final Map<String, String[]> modules = new LinkedHashMap<>();
+
+        Group(final int depth) {
+            this.depth = depth;
+        }
+
+        /**
+         * Split the group by the next component of the module names, going down the levels shared by all the modules.
+         * The modules having no more components, e.g. the {@code __init__.py} of the package, form a group of their
+         * own.
+         *
+         * @return the sub-groups, or just this group if it can't be split.
+         */
+        List<Group> split() {
+            Map<String, Group> subGroups = new LinkedHashMap<>();
+            boolean deeper = false;
+            for (Map.Entry<String, String[]> module : modules.entrySet()) {
+                String[] components = module.getValue();
+                deeper |= components.length > depth;
+                String key = components.length > depth ? components[depth] : "";
+                subGroups.computeIfAbsent(key, k -> new Group(depth + 1)).modules.put(module.getKey(), components);
+            }
+            if (!deeper) {
+                return Collections.singletonList(this);
+            }
+            if (subGroups.size() == 1) {
+                return subGroups.values().iterator().next().split();
+            }
+            return new ArrayList<>(subGroups.values());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.mpapi;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a process stream to its end, keeping only its last bytes in a ring buffer, so that a process writing a lot
+ * to a stream nobody else reads (e.g. warnings on stderr) never blocks on a full pipe.
+ */
+final class StreamTail implements Runnable {
+    private static final Logger LOG = Logger.getInstance(StreamTail.class);
+    static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private final InputStream inputStream;
+    private final byte[] buffer;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private int position;
+    private long totalBytes;
+
+    StreamTail(@NotNull final InputStream inputStream, final int capacity) {
+        this.inputStream = inputStream;
+        this.buffer = new byte[capacity];
+    }
+
+    /**
+     * Start reading a stream on a pooled thread.
+     *
+     * @param inputStream the stream, closed once read.
+     * @return the tail of the stream, filled as the stream is read.
+     */
+    @NotNull
+    static StreamTail drain(@NotNull final InputStream inputStream) {
+        StreamTail tail = new StreamTail(inputStream, DEFAULT_CAPACITY);
+        AppExecutorUtil.getAppExecutorService().execute(tail);
+        return tail;
+    }
+
+    @Override
+    public void run() {
+        byte[] chunk = new byte[8192];
+        try (InputStream stream = inputStream) {
+            int read;
+            while ((read = stream.read(chunk)) != -1) {
+                append(chunk, read);
+            }
+        } catch (IOException e) {
+            // the process has been destroyed
+            LOG.debug("Stopped reading a Mypy process stream", e);
+        } finally {
+            finished.countDown();
+        }
+    }
+
+    /**
+     * Get the last bytes read, waiting a bit for the end of the stream as the process may have just exited.
+     *
+     * @param timeoutMillis how long to wait for the end of the stream.
+     * @return the tail of the stream, starting with an ellipsis if the beginning has been dropped.
+     */
+    @NotNull
+    String getText(final long timeoutMillis) {
+        try {
+            finished.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return getText();
+    }
+
+    @NotNull
+    synchronized String getText() {
+        if (totalBytes < buffer.length) {
+            return new String(buffer, 0, position, StandardCharsets.UTF_8);
+        }
+        byte[] tail = new byte[buffer.length];
+        System.arraycopy(buffer, position, tail, 0, buffer.length - position);
+        System.arraycopy(buffer, 0, tail, buffer.length - position, position);
+        if (totalBytes == buffer.length) {
+            return new String(tail, StandardCharsets.UTF_8);
+        }
+        // drop the line cut by the ring buffer
+        int start = 0;
+        while (start < tail.length - 1 && tail[start] != '\n') {
+            start++;
+        }
+        return "..." + new String(tail, start, tail.length - start, StandardCharsets.UTF_8);
+    }
+
+    synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    synchronized void append(final byte[] bytes, final int length) {
+        totalBytes += length;
+        int offset = Math.max(0, length - buffer.length);
+        while (offset < length) {
+            int count = Math.min(length - offset, buffer.length - position);
+            System.arraycopy(bytes, offset, buffer, position, count);
+            position = (position + count) % buffer.length;
+            offset += count;
+        }
+    }
+}
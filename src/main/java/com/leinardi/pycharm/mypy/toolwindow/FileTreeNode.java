@@ -0,0 +1,147 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.toolwindow;
+
+import com.intellij.psi.PsiFile;
+import com.leinardi.pycharm.mypy.checker.Problem;
+import com.leinardi.pycharm.mypy.mpapi.SeverityLevel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.tree.TreeNode;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Tree node of a file, whose problem nodes are only created the first time they are needed, e.g. when the node is
+ * expanded: most of the files of a large scan are never looked at.
+ */
+class FileTreeNode extends TogglableTreeNode {
+    private static final long serialVersionUID = 3386102858419421237L;
+
+    private final transient PsiFile file;
+    private final int[] problemCounts;
+    private transient List<Problem> pendingProblems;
+    private SeverityLevel[] levels;
+
+    FileTreeNode(@NotNull final PsiFile file, @NotNull final List<Problem> problems, final SeverityLevel... levels) {
+        this.file = file;
+        this.pendingProblems = problems;
+        this.levels = levels;
+        problemCounts = new int[SeverityLevel.values().length];
+        for (final Problem problem : problems) {
+            problemCounts[problem.severityLevel().ordinal()]++;
+        }
+        setUserObject(new ResultTreeNode(file.getName(), problemCounts));
+    }
+
+    PsiFile getFile() {
+        return file;
+    }
+
+    int[] getProblemCounts() {
+        return problemCounts;
+    }
+
+    /**
+     * Display only the problems of the passed severity levels.
+     *
+     * @param newLevels the levels. Null is treated as 'none'.
+     * @return true if the visible children changed.
+     */
+    boolean filter(@Nullable final SeverityLevel... newLevels) {
+        if (pendingProblems != null) {
+            final int visibleCount = getChildCount();
+            levels = newLevels;
+            return visibleCount != getChildCount();
+        }
+        levels = newLevels;
+        boolean changed = false;
+        for (final TogglableTreeNode problemNode : getAllChildren()) {
+            final ResultTreeNode result = (ResultTreeNode) problemNode.getUserObject();
+            final boolean desiredVisible = isDisplayed(result.getSeverity());
+            if (problemNode.isVisible() != desiredVisible) {
+                problemNode.setVisible(desiredVisible);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public TreeNode getChildAt(final int index) {
+        createProblemNodes();
+        return super.getChildAt(index);
+    }
+
+    @Override
+    public int getChildCount() {
+        if (pendingProblems == null) {
+            return super.getChildCount();
+        }
+        int count = 0;
+        for (final SeverityLevel level : SeverityLevel.values()) {
+            if (isDisplayed(level)) {
+                count += problemCounts[level.ordinal()];
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int getIndex(final TreeNode node) {
+        createProblemNodes();
+        return super.getIndex(node);
+    }
+
+    @Override
+    public Enumeration<TreeNode> children() {
+        createProblemNodes();
+        return super.children();
+    }
+
+    @Override
+    List<TogglableTreeNode> getAllChildren() {
+        createProblemNodes();
+        return super.getAllChildren();
+    }
+
+    private void createProblemNodes() {
+        if (pendingProblems == null) {
+            return;
+        }
+        final List<Problem> problems = pendingProblems;
+        pendingProblems = null;
+        for (final Problem problem : problems) {
+            add(new TogglableTreeNode(new ResultTreeNode(file, problem)));
+        }
+        // all visible while being added, as the children are appended at the visible child count
+        filter(levels);
+    }
+
+    private boolean isDisplayed(final SeverityLevel severity) {
+        if (levels == null) {
+            return false;
+        }
+        for (final SeverityLevel level : levels) {
+            if (level == severity) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
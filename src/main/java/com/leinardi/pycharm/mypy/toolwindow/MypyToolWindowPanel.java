@@ -39,6 +39,7 @@ import com.intellij.ui.content.Content;
 import com.intellij.ui.treeStructure.Tree;
 import com.intellij.util.ui.JBUI;
 import com.leinardi.pycharm.mypy.MypyBundle;
+import com.leinardi.pycharm.mypy.MypyIssueStore;
 import com.leinardi.pycharm.mypy.MypyPlugin;
 import com.leinardi.pycharm.mypy.checker.Problem;
 import com.leinardi.pycharm.mypy.exception.MypyToolException;
@@ -87,6 +88,7 @@ public class MypyToolWindowPanel extends JPanel implements DumbAware {
 
     private static final String MAIN_ACTION_GROUP = "MypyPluginActions";
     private static final String TREE_ACTION_GROUP = "MypyPluginTreeActions";
+    private static final int MAX_EXPANDED_PROBLEMS = 5000;
     private static final Map<Pattern, String> MYPY_ERROR_PATTERNS
             = new HashMap<>();
 
@@ -102,6 +104,8 @@ public class MypyToolWindowPanel extends JPanel implements DumbAware {
     private JToolBar progressPanel;
     private JProgressBar progressBar;
     private JLabel progressLabel;
+    private JLabel cacheStatisticsLabel;
+    private JLabel scanQueueLabel;
     private ResultTreeModel treeModel;
     private boolean scrollToSource;
 
@@ -158,6 +162,11 @@ public class MypyToolWindowPanel extends JPanel implements DumbAware {
         expandTree();
 
         mainToolbar.getComponent().setVisible(true);
+
+        final Map<PsiFile, List<Problem>> restoredResults = MypyIssueStore.getInstance(project).takeRestoredResults();
+        if (!restoredResults.isEmpty()) {
+            displayResults(restoredResults);
+        }
     }
 
     private JPanel createToolPanel() {
@@ -174,6 +183,8 @@ public class MypyToolWindowPanel extends JPanel implements DumbAware {
         resultsTree.setCellRenderer(new ResultTreeRenderer());
 
         progressLabel = new JLabel(" ");
+        cacheStatisticsLabel = new JLabel(" ");
+        scanQueueLabel = new JLabel(" ");
         progressBar = new JProgressBar(JProgressBar.HORIZONTAL);
         progressBar.setMinimum(0);
         final Dimension progressBarSize = new Dimension(100, progressBar.getPreferredSize().height);
@@ -187,6 +198,10 @@ public class MypyToolWindowPanel extends JPanel implements DumbAware {
         progressPanel.add(Box.createHorizontalStrut(4));
         progressPanel.add(progressLabel);
         progressPanel.add(Box.createHorizontalGlue());
+        progressPanel.add(scanQueueLabel);
+        progressPanel.add(Box.createHorizontalStrut(8));
+        progressPanel.add(cacheStatisticsLabel);
+        progressPanel.add(Box.createHorizontalStrut(4));
         progressPanel.setFloatable(false);
         progressPanel.setOpaque(false);
         progressPanel.setBorder(null);
@@ -242,6 +257,29 @@ public class MypyToolWindowPanel extends JPanel implements DumbAware {
         progressLabel.validate();
     }
 
+    /**
+     * Update the statistics of the annotator result cache.
+     *
+     * @param hits   the number of checks served from the cache.
+     * @param misses the number of checks that had to run Mypy.
+     */
+    public void displayCacheStatistics(final long hits, final long misses) {
+        cacheStatisticsLabel.setText(MypyBundle.message("plugin.results.cache-statistics", hits, misses));
+        cacheStatisticsLabel.validate();
+    }
+
+    /**
+     * Display the state of the scan scheduler.
+     *
+     * @param running the number of scans running.
+     * @param queued  the number of scans waiting for a free slot.
+     */
+    public void displayScanQueue(final int running, final int queued) {
+        scanQueueLabel.setText(running == 0 && queued == 0
+                ? " " : MypyBundle.message("plugin.results.scan-queue", running, queued));
+        scanQueueLabel.validate();
+    }
+
     /**
      * Show and reset the progress bar.
      */
@@ -547,6 +585,9 @@ public class MypyToolWindowPanel extends JPanel implements DumbAware {
 
     /**
      * Display the passed results.
+     * <p>
+     * The files are left collapsed when there are too many problems, as their problem nodes are only created once
+     * they are expanded.
      *
      * @param results the map of checked files to problem descriptors.
      */
@@ -556,10 +597,26 @@ public class MypyToolWindowPanel extends JPanel implements DumbAware {
         invalidate();
         repaint();
 
-        expandTree();
+        if (treeModel.getProblemCount() > MAX_EXPANDED_PROBLEMS) {
+            expandTree(1);
+        } else {
+            expandTree();
+        }
         clearProgress();
     }
 
+    /**
+     * Update the displayed results of the passed files, keeping the results of the other files.
+     *
+     * @param results the map of re-checked files to problem descriptors.
+     */
+    public void mergeResults(final Map<PsiFile, List<Problem>> results) {
+        treeModel.mergeModel(results, getDisplayedSeverities());
+
+        invalidate();
+        repaint();
+    }
+
     public boolean isDisplayingErrors() {
         return displayingErrors;
     }
@@ -28,6 +28,7 @@ import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreeNode;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -41,6 +42,8 @@ public class ResultTreeModel extends DefaultTreeModel {
     private static final long serialVersionUID = 2161855162879365203L;
 
     private final DefaultMutableTreeNode visibleRootNode;
+    private final Map<PsiFile, List<Problem>> displayedResults = new HashMap<>();
+    private final Map<PsiFile, FileTreeNode> fileNodes = new HashMap<>();
 
     public ResultTreeModel() {
         super(new DefaultMutableTreeNode());
@@ -53,6 +56,8 @@ public class ResultTreeModel extends DefaultTreeModel {
 
     public void clear() {
         visibleRootNode.removeAllChildren();
+        displayedResults.clear();
+        fileNodes.clear();
         nodeStructureChanged(visibleRootNode);
     }
 
@@ -99,109 +104,138 @@ public class ResultTreeModel extends DefaultTreeModel {
      * @param levels the levels. Null is treated as 'none'.
      */
     public void filter(final SeverityLevel... levels) {
-        filter(true, levels);
-    }
-
-    private void filter(final boolean sendEvents, final SeverityLevel... levels) {
         final Set<TogglableTreeNode> changedNodes = new HashSet<>();
 
         for (int fileIndex = 0; fileIndex < visibleRootNode.getChildCount(); ++fileIndex) {
-            final TogglableTreeNode fileNode = (TogglableTreeNode) visibleRootNode.getChildAt(fileIndex);
-
-            for (final TogglableTreeNode problemNode : fileNode.getAllChildren()) {
-                final ResultTreeNode result = (ResultTreeNode) problemNode.getUserObject();
-
-                final boolean currentVisible = problemNode.isVisible();
-                final boolean desiredVisible = contains(levels, result.getSeverity());
-                if (currentVisible != desiredVisible) {
-                    problemNode.setVisible(desiredVisible);
-
-                    changedNodes.add(fileNode);
-                }
+            final FileTreeNode fileNode = (FileTreeNode) visibleRootNode.getChildAt(fileIndex);
+            if (fileNode.filter(levels)) {
+                changedNodes.add(fileNode);
             }
         }
 
-        if (sendEvents) {
-            for (final TogglableTreeNode node : changedNodes) {
-                nodeStructureChanged(node);
-            }
+        for (final TogglableTreeNode node : changedNodes) {
+            nodeStructureChanged(node);
         }
     }
 
-    /*
-     * This is a port from commons-lang 2.4, in order to get around the absence of commons-lang in
-     * some packages of IDEA 7.x.
+    /**
+     * Set the displayed model.
+     *
+     * @param results the model.
+     * @param levels  the levels to display.
      */
-    private boolean contains(final Object[] array, final Object objectToFind) {
-        if (array == null) {
-            return false;
-        }
-        if (objectToFind == null) {
-            for (final Object anArray : array) {
-                if (anArray == null) {
-                    return true;
-                }
-            }
-        } else {
-            for (final Object anArray : array) {
-                if (objectToFind.equals(anArray)) {
-                    return true;
+    public void setModel(final Map<PsiFile, List<Problem>> results,
+                         final SeverityLevel... levels) {
+        visibleRootNode.removeAllChildren();
+        displayedResults.clear();
+        fileNodes.clear();
+        if (results != null) {
+            results.forEach((file, problems) -> {
+                if (!problems.isEmpty()) {
+                    displayedResults.put(file, problems);
                 }
+            });
+        }
+
+        for (final PsiFile file : sortedFileNames(displayedResults)) {
+            final FileTreeNode fileNode = createFileNode(file, displayedResults.get(file), levels);
+            if (fileNode != null) {
+                visibleRootNode.add(fileNode);
+                fileNodes.put(file, fileNode);
             }
         }
-        return false;
+
+        updateRootText();
+        nodeStructureChanged(visibleRootNode);
     }
 
     /**
-     * Set the displayed model.
+     * Replace the displayed results of some files, leaving the other files untouched.
      *
-     * @param results the model.
+     * @param results the new results of the files, files without problems included.
      * @param levels  the levels to display.
      */
-    public void setModel(final Map<PsiFile, List<Problem>> results,
-                         final SeverityLevel... levels) {
-        visibleRootNode.removeAllChildren();
+    public void mergeModel(final Map<PsiFile, List<Problem>> results,
+                           final SeverityLevel... levels) {
+        for (final Map.Entry<PsiFile, List<Problem>> entry : results.entrySet()) {
+            final PsiFile file = entry.getKey();
+            final FileTreeNode oldFileNode = fileNodes.remove(file);
+            if (oldFileNode != null) {
+                removeNodeFromParent(oldFileNode);
+            }
+            if (entry.getValue().isEmpty()) {
+                displayedResults.remove(file);
+            } else {
+                displayedResults.put(file, entry.getValue());
+            }
 
-        boolean hasProblems = false;
-        int[] totalCounts = new int[SeverityLevel.values().length];
-        for (final PsiFile file : sortedFileNames(results)) {
-            final TogglableTreeNode fileNode = new TogglableTreeNode();
-            final List<Problem> problems = results.get(file);
-
-            int[] fileCounts = new int[SeverityLevel.values().length];
-            if (problems != null) {
-                for (final Problem problem : problems) {
-                    final ResultTreeNode problemObj = new ResultTreeNode(file, problem);
-
-                    final TogglableTreeNode problemNode = new TogglableTreeNode(problemObj);
-                    fileNode.add(problemNode);
-                    fileCounts[problem.severityLevel().ordinal()]++;
-                }
+            final FileTreeNode fileNode = createFileNode(file, entry.getValue(), levels);
+            if (fileNode != null) {
+                insertNodeInto(fileNode, visibleRootNode, insertionIndexOf(file));
+                fileNodes.put(file, fileNode);
+            }
+        }
+        updateRootText();
+    }
 
-                for (int i = 0; i < totalCounts.length; i++) {
-                    totalCounts[i] += fileCounts[i];
-                }
+    @Nullable
+    private FileTreeNode createFileNode(final PsiFile file,
+                                        @Nullable final List<Problem> problems,
+                                        final SeverityLevel... levels) {
+        if (problems == null || problems.isEmpty()) {
+            return null;
+        }
+        return new FileTreeNode(file, problems, levels);
+    }
 
-                if (!problems.isEmpty()) {
-                    final ResultTreeNode nodeObject = new ResultTreeNode(file.getName(), fileCounts);
-                    fileNode.setUserObject(nodeObject);
-                    visibleRootNode.add(fileNode);
-                    hasProblems = true;
-                }
+    /**
+     * @return the number of displayed problems, filtered out ones included.
+     */
+    public int getProblemCount() {
+        int count = 0;
+        for (final FileTreeNode fileNode : fileNodes.values()) {
+            for (final int severityCount : fileNode.getProblemCounts()) {
+                count += severityCount;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Binary search of the file nodes, sorted by file name, for the index after the last node not after the file.
+     */
+    private int insertionIndexOf(final PsiFile file) {
+        int low = 0;
+        int high = visibleRootNode.getChildCount();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            final FileTreeNode fileNode = (FileTreeNode) visibleRootNode.getChildAt(middle);
+            if (fileNode.getFile().getName().compareTo(file.getName()) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
             }
         }
+        return low;
+    }
 
-        if (hasProblems) {
+    private void updateRootText() {
+        int[] totalCounts = new int[SeverityLevel.values().length];
+        for (final FileTreeNode fileNode : fileNodes.values()) {
+            final int[] fileCounts = fileNode.getProblemCounts();
+            for (int i = 0; i < totalCounts.length; i++) {
+                totalCounts[i] += fileCounts[i];
+            }
+        }
+
+        if (!fileNodes.isEmpty()) {
             setRootText(StringUtil.pluralize(
                     MypyBundle.message("plugin.results.scan-results",
                             concatProblems(totalCounts),
-                            results.size()), results.size()));
+                            displayedResults.size()), displayedResults.size()));
         } else {
             setRootMessage("plugin.results.scan-no-results");
         }
-
-        filter(false, levels);
-        nodeStructureChanged(visibleRootNode);
     }
 
     private Iterable<PsiFile> sortedFileNames(final Map<PsiFile, List<Problem>> results) {
@@ -20,6 +20,7 @@ import com.intellij.openapi.fileChooser.FileChooserDescriptor;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.TextComponentAccessor;
 import com.intellij.openapi.ui.TextFieldWithBrowseButton;
+import com.intellij.ui.JBIntSpinner;
 import com.intellij.ui.components.JBTextField;
 import com.leinardi.pycharm.mypy.MypyBundle;
 import com.leinardi.pycharm.mypy.MypyConfigService;
@@ -30,15 +31,31 @@ import com.leinardi.pycharm.mypy.util.Notifications;
 import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JPanel;
 import java.awt.event.ActionEvent;
 
 public class MypyConfigPanel {
+    private static final int MAX_TIMEOUT_SECONDS = 24 * 60 * 60;
+
     private JPanel rootPanel;
     private JButton testButton;
     private com.intellij.openapi.ui.TextFieldWithBrowseButton mypyPathField;
     private com.intellij.openapi.ui.TextFieldWithBrowseButton mypyConfigFilePathField;
     private JBTextField argumentsField;
+    private JCheckBox daemonCheckBox;
+    private JCheckBox incrementalScansCheckBox;
+    private JBIntSpinner incrementalScanDelaySpinner;
+    private JCheckBox shardedScansCheckBox;
+    private JBIntSpinner maxConcurrentShardsSpinner;
+    private JBIntSpinner annotatorScanTimeoutSpinner;
+    private JBIntSpinner checkinScanTimeoutSpinner;
+    private JBIntSpinner projectScanTimeoutSpinner;
+    private JBIntSpinner maxConcurrentScansSpinner;
+    private JBIntSpinner daemonPoolSizeSpinner;
+    private JBIntSpinner daemonIdleTimeoutSpinner;
+    private JBIntSpinner daemonMaxRssSpinner;
+    private JBIntSpinner annotatorDebounceSpinner;
     private Project project;
 
     public MypyConfigPanel(Project project) {
@@ -66,6 +83,22 @@ public class MypyConfigPanel {
                 TextComponentAccessor.TEXT_FIELD_WHOLE_TEXT);
         argumentsField.setText(mypyConfigService.getMypyArguments());
         argumentsField.getEmptyText().setText(MypyBundle.message("config.optional"));
+        daemonCheckBox.addItemListener(e -> updateEnabledFields());
+        setUseDaemon(mypyConfigService.isUseDaemon());
+        setDaemonPoolSize(mypyConfigService.getDaemonPoolSize());
+        setDaemonIdleTimeoutMinutes(mypyConfigService.getDaemonIdleTimeoutMinutes());
+        setDaemonMaxRssMegabytes(mypyConfigService.getDaemonMaxRssMegabytes());
+        setAnnotatorDebounceMillis(mypyConfigService.getAnnotatorDebounceMillis());
+        incrementalScansCheckBox.addItemListener(e -> updateEnabledFields());
+        setIncrementalScans(mypyConfigService.isIncrementalScans());
+        setIncrementalScanDelayMillis(mypyConfigService.getIncrementalScanDelayMillis());
+        shardedScansCheckBox.addItemListener(e -> updateEnabledFields());
+        setShardedScans(mypyConfigService.isShardedScans());
+        setMaxConcurrentShards(mypyConfigService.getMaxConcurrentShards());
+        setAnnotatorScanTimeoutSeconds(mypyConfigService.getAnnotatorScanTimeoutSeconds());
+        setCheckinScanTimeoutSeconds(mypyConfigService.getCheckinScanTimeoutSeconds());
+        setProjectScanTimeoutSeconds(mypyConfigService.getProjectScanTimeoutSeconds());
+        setMaxConcurrentScans(mypyConfigService.getMaxConcurrentScans());
     }
 
     public JPanel getPanel() {
@@ -92,6 +125,121 @@ public class MypyConfigPanel {
         return argumentsField.getText();
     }
 
+    public boolean isUseDaemon() {
+        return daemonCheckBox.isSelected();
+    }
+
+    public void setUseDaemon(boolean useDaemon) {
+        daemonCheckBox.setSelected(useDaemon);
+        updateEnabledFields();
+    }
+
+    public int getDaemonPoolSize() {
+        return daemonPoolSizeSpinner.getNumber();
+    }
+
+    public void setDaemonPoolSize(int daemonPoolSize) {
+        daemonPoolSizeSpinner.setNumber(daemonPoolSize);
+    }
+
+    public int getDaemonIdleTimeoutMinutes() {
+        return daemonIdleTimeoutSpinner.getNumber();
+    }
+
+    public void setDaemonIdleTimeoutMinutes(int daemonIdleTimeoutMinutes) {
+        daemonIdleTimeoutSpinner.setNumber(daemonIdleTimeoutMinutes);
+    }
+
+    public int getDaemonMaxRssMegabytes() {
+        return daemonMaxRssSpinner.getNumber();
+    }
+
+    public void setDaemonMaxRssMegabytes(int daemonMaxRssMegabytes) {
+        daemonMaxRssSpinner.setNumber(daemonMaxRssMegabytes);
+    }
+
+    public int getAnnotatorDebounceMillis() {
+        return annotatorDebounceSpinner.getNumber();
+    }
+
+    public void setAnnotatorDebounceMillis(int annotatorDebounceMillis) {
+        annotatorDebounceSpinner.setNumber(annotatorDebounceMillis);
+    }
+
+    public boolean isIncrementalScans() {
+        return incrementalScansCheckBox.isSelected();
+    }
+
+    public void setIncrementalScans(boolean incrementalScans) {
+        incrementalScansCheckBox.setSelected(incrementalScans);
+        updateEnabledFields();
+    }
+
+    public int getIncrementalScanDelayMillis() {
+        return incrementalScanDelaySpinner.getNumber();
+    }
+
+    public void setIncrementalScanDelayMillis(int incrementalScanDelayMillis) {
+        incrementalScanDelaySpinner.setNumber(incrementalScanDelayMillis);
+    }
+
+    public boolean isShardedScans() {
+        return shardedScansCheckBox.isSelected();
+    }
+
+    public void setShardedScans(boolean shardedScans) {
+        shardedScansCheckBox.setSelected(shardedScans);
+        updateEnabledFields();
+    }
+
+    public int getMaxConcurrentShards() {
+        return maxConcurrentShardsSpinner.getNumber();
+    }
+
+    public void setMaxConcurrentShards(int maxConcurrentShards) {
+        maxConcurrentShardsSpinner.setNumber(maxConcurrentShards);
+    }
+
+    public int getAnnotatorScanTimeoutSeconds() {
+        return annotatorScanTimeoutSpinner.getNumber();
+    }
+
+    public void setAnnotatorScanTimeoutSeconds(int annotatorScanTimeoutSeconds) {
+        annotatorScanTimeoutSpinner.setNumber(annotatorScanTimeoutSeconds);
+    }
+
+    public int getCheckinScanTimeoutSeconds() {
+        return checkinScanTimeoutSpinner.getNumber();
+    }
+
+    public void setCheckinScanTimeoutSeconds(int checkinScanTimeoutSeconds) {
+        checkinScanTimeoutSpinner.setNumber(checkinScanTimeoutSeconds);
+    }
+
+    public int getProjectScanTimeoutSeconds() {
+        return projectScanTimeoutSpinner.getNumber();
+    }
+
+    public void setProjectScanTimeoutSeconds(int projectScanTimeoutSeconds) {
+        projectScanTimeoutSpinner.setNumber(projectScanTimeoutSeconds);
+    }
+
+    public int getMaxConcurrentScans() {
+        return maxConcurrentScansSpinner.getNumber();
+    }
+
+    public void setMaxConcurrentScans(int maxConcurrentScans) {
+        maxConcurrentScansSpinner.setNumber(maxConcurrentScans);
+    }
+
+    private void updateEnabledFields() {
+        daemonPoolSizeSpinner.setEnabled(daemonCheckBox.isSelected());
+        daemonIdleTimeoutSpinner.setEnabled(daemonCheckBox.isSelected());
+        daemonMaxRssSpinner.setEnabled(daemonCheckBox.isSelected());
+        incrementalScanDelaySpinner.setEnabled(incrementalScansCheckBox.isSelected());
+        maxConcurrentShardsSpinner.setEnabled(shardedScansCheckBox.isSelected());
+    }
+
     @SuppressWarnings("unused")
     private void createUIComponents() {
         JBTextField autodetectTextField = new JBTextField();
@@ -101,6 +249,18 @@ public class MypyConfigPanel {
         JBTextField optionalTextField = new JBTextField();
         optionalTextField.getEmptyText().setText(MypyBundle.message("config.optional"));
         mypyConfigFilePathField = new TextFieldWithBrowseButton(optionalTextField);
+        daemonPoolSizeSpinner = new JBIntSpinner(2, 1, 16);
+        daemonIdleTimeoutSpinner = new JBIntSpinner(30, 1, 24 * 60);
+        // 0 disables the limit
+        daemonMaxRssSpinner = new JBIntSpinner(4096, 0, 1024 * 1024, 256);
+        annotatorDebounceSpinner = new JBIntSpinner(300, 0, 10_000, 50);
+        incrementalScanDelaySpinner = new JBIntSpinner(1000, 0, 60_000, 100);
+        maxConcurrentShardsSpinner = new JBIntSpinner(1, 1, 64);
+        // 0 disables the timeout
+        annotatorScanTimeoutSpinner = new JBIntSpinner(60, 0, MAX_TIMEOUT_SECONDS, 10);
+        checkinScanTimeoutSpinner = new JBIntSpinner(300, 0, MAX_TIMEOUT_SECONDS, 10);
+        projectScanTimeoutSpinner = new JBIntSpinner(600, 0, MAX_TIMEOUT_SECONDS, 10);
+        maxConcurrentScansSpinner = new JBIntSpinner(2, 1, 16);
     }
 
     private final class TestAction extends AbstractAction {
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 64-bit FNV-1a hashes of file contents, used to recognise contents that have already been checked.
+ */
+public final class ContentHashes {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ContentHashes() {
+    }
+
+    public static long hash(@NotNull final CharSequence content) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < content.length(); i++) {
+            char character = content.charAt(i);
+            hash = (hash ^ (character & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (character >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    public static long hash(@NotNull final ByteBuffer content) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = content.position(); i < content.limit(); i++) {
+            hash = (hash ^ (content.get(i) & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the contents of documents to the files checked by Mypy: the text is encoded in a single pass, translating
+ * the line separators on the fly, and the write is skipped when the file already holds the same bytes.
+ */
+public final class ContentWriter {
+    private static final int MIN_BUFFER_SIZE = 1024;
+
+    private ContentWriter() {
+    }
+
+    /**
+     * Encode a text using {@code \n} as line separator, the way IntelliJ stores documents.
+     *
+     * @param content       the text.
+     * @param lineSeparator the line separator to write instead of {@code \n}.
+     * @param charset       the charset of the file.
+     * @return the encoded bytes, ready to be read.
+     * @throws CharacterCodingException if the encoder fails.
+     */
+    @NotNull
+    public static ByteBuffer encode(@NotNull final CharSequence content,
+                                    @NotNull final String lineSeparator,
+                                    @NotNull final Charset charset) throws CharacterCodingException {
+        CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer out = ByteBuffer.allocate(Math.max(MIN_BUFFER_SIZE,
+                (int) (content.length() * encoder.averageBytesPerChar()) + content.length() / 32));
+        int start = 0;
+        if (!"\n".equals(lineSeparator)) {
+            for (int i = 0; i < content.length(); i++) {
+                if (content.charAt(i) == '\n') {
+                    out = encode(encoder, CharBuffer.wrap(content, start, i), out, false);
+                    out = encode(encoder, CharBuffer.wrap(lineSeparator), out, false);
+                    start = i + 1;
+                }
+            }
+        }
+        out = encode(encoder, CharBuffer.wrap(content, start, content.length()), out, true);
+        while (encoder.flush(out).isOverflow()) {
+            out = grow(out);
+        }
+        out.flip();
+        return out;
+    }
+
+    /**
+     * Write the bytes to a file, unless it already contains them.
+     * <p>
+     * The bytes are written next to the file and then moved in place, so that a concurrent reader never sees a
+     * partially written file.
+     *
+     * @param path     the file.
+     * @param contents the bytes to write, left untouched.
+     * @return true if the file has been written, false if it was up to date.
+     * @throws IOException if the file can't be read or written.
+     */
+    public static boolean writeIfChanged(@NotNull final Path path, @NotNull final ByteBuffer contents)
+            throws IOException {
+        if (hasContents(path, contents)) {
+            return false;
+        }
+        Path temporaryFile = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = contents.duplicate();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temporaryFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+        return true;
+    }
+
+    private static boolean hasContents(final Path path, final ByteBuffer contents) throws IOException {
+        if (!Files.isRegularFile(path) || Files.size(path) != contents.remaining()) {
+            return false;
+        }
+        ByteBuffer existing = ByteBuffer.allocate(contents.remaining());
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (existing.hasRemaining() && channel.read(existing) >= 0) {
+                // read the whole file
+            }
+        }
+        existing.flip();
+        // compares the remaining bytes, both buffers are already in memory
+        return existing.equals(contents);
+    }
+
+    private static ByteBuffer encode(final CharsetEncoder encoder,
+                                     final CharBuffer in,
+                                     final ByteBuffer out,
+                                     final boolean endOfInput) throws CharacterCodingException {
+        ByteBuffer buffer = out;
+        while (true) {
+            CoderResult result = encoder.encode(in, buffer, endOfInput);
+            if (result.isOverflow()) {
+                buffer = grow(buffer);
+            } else if (result.isUnderflow()) {
+                return buffer;
+            } else {
+                result.throwException();
+            }
+        }
+    }
+
+    private static ByteBuffer grow(final ByteBuffer buffer) {
+        ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2);
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+}
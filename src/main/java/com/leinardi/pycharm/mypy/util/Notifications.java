@@ -35,8 +35,12 @@ import com.leinardi.pycharm.mypy.mpapi.MypyRunner;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 import static com.intellij.notification.NotificationListener.URL_OPENING_LISTENER;
 import static com.intellij.notification.NotificationType.ERROR;
@@ -52,6 +56,7 @@ public final class Notifications {
     private static final NotificationGroup LOG_ONLY_GROUP =
             NotificationGroupManager.getInstance().getNotificationGroup("logging");
     private static final String TITLE = message("plugin.name");
+    private static final int MAX_LISTED_FILES = 10;
 
     private Notifications() {
     }
@@ -125,6 +130,27 @@ public final class Notifications {
                 .notify(project);
     }
 
+    public static void showScanTimeout(final Project project, final int timeoutSeconds,
+                                       final Collection<String> filePaths) {
+        List<String> fileNames = new ArrayList<>();
+        for (String filePath : filePaths) {
+            if (fileNames.size() == MAX_LISTED_FILES) {
+                fileNames.add(MypyBundle.message("plugin.notification.scan-timeout.more",
+                        filePaths.size() - MAX_LISTED_FILES));
+                break;
+            }
+            fileNames.add(new File(filePath).getName());
+        }
+        BALLOON_GROUP
+                .createNotification(TITLE,
+                        MypyBundle.message("plugin.notification.scan-timeout.content", timeoutSeconds,
+                                String.join(", ", fileNames)),
+                        WARNING)
+                .setListener(URL_OPENING_LISTENER)
+                .setSubtitle(MypyBundle.message("plugin.notification.scan-timeout.subtitle"))
+                .notify(project);
+    }
+
     public static void showNoPythonInterpreter(Project project) {
         Notification notification = BALLOON_GROUP
                 .createNotification(
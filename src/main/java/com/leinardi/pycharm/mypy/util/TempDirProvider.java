@@ -16,6 +16,7 @@
 
 package com.leinardi.pycharm.mypy.util;
 
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.components.ServiceKt;
 import com.intellij.openapi.components.StorageScheme;
 import com.intellij.openapi.components.impl.stores.IProjectStore;
@@ -48,6 +49,22 @@ public class TempDirProvider {
         return systemTempDir;
     }
 
+    /**
+     * Get the directory holding the shadow copies of the unsaved documents of a project. The directory is kept across
+     * scans, and the shadow copy of a document is overwritten on each scan.
+     *
+     * @param project the project.
+     * @return the directory, created if needed.
+     */
+    @NotNull
+    public File forShadowFiles(@NotNull final Project project) {
+        File shadowDir = new File(PathManager.getSystemPath() + File.separator + "mypy" + File.separator
+                + project.getLocationHash() + File.separator + "shadow");
+        //noinspection ResultOfMethodCallIgnored
+        shadowDir.mkdirs();
+        return shadowDir;
+    }
+
     @NotNull
     private File temporaryDirectoryLocationFor(final Project project) {
         return getIdeaFolder(project).map(vf -> new File(vf.getPath(), "mypymypy.tmp"))
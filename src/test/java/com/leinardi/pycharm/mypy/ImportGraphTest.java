@@ -0,0 +1,64 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ImportGraphTest {
+    @Test
+    public void testDependentsAreTransitiveAndDirectFirst() {
+        ImportGraph graph = new ImportGraph();
+        graph.put("/p/models/base.py", "models.base", Collections.emptyList());
+        graph.put("/p/models/user.py", "models.user", Arrays.asList("models", "models.base"));
+        graph.put("/p/views.py", "views", Arrays.asList("models", "models.user"));
+        graph.put("/p/main.py", "main", Collections.singletonList("views"));
+        graph.put("/p/other.py", "other", Collections.singletonList("os"));
+
+        Assert.assertEquals(Arrays.asList("/p/models/user.py", "/p/views.py", "/p/main.py"),
+                List.copyOf(graph.getDependents(Collections.singletonList("/p/models/base.py"), 10)));
+        Assert.assertEquals(Collections.singletonList("/p/models/user.py"),
+                List.copyOf(graph.getDependents(Collections.singletonList("/p/models/base.py"), 1)));
+    }
+
+    @Test
+    public void testPutAndRemoveReplaceImports() {
+        ImportGraph graph = new ImportGraph();
+        graph.put("/p/a.py", "a", Collections.emptyList());
+        graph.put("/p/b.py", "b", Collections.singletonList("a"));
+        graph.put("/p/b.py", "b", Collections.singletonList("os"));
+
+        Assert.assertTrue(graph.getDependents(Collections.singletonList("/p/a.py"), 10).isEmpty());
+        graph.put("/p/b.py", "b", Collections.singletonList("a"));
+        graph.remove("/p/b.py");
+        Assert.assertTrue(graph.getDependents(Collections.singletonList("/p/a.py"), 10).isEmpty());
+    }
+
+    @Test
+    public void testResolveRelativeImport() {
+        Assert.assertEquals("pkg.base", ImportGraph.resolveRelativeImport("pkg.mod", false, 1, "base"));
+        Assert.assertEquals("pkg", ImportGraph.resolveRelativeImport("pkg.mod", false, 1, null));
+        Assert.assertEquals("pkg.sub.base", ImportGraph.resolveRelativeImport("pkg.sub", true, 1, "base"));
+        Assert.assertEquals("pkg.base", ImportGraph.resolveRelativeImport("pkg.sub.mod", false, 2, "base"));
+        Assert.assertNull(ImportGraph.resolveRelativeImport("pkg.mod", false, 2, "base"));
+        Assert.assertNull(ImportGraph.resolveRelativeImport("mod", false, 1, "base"));
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy;
+
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.leinardi.pycharm.mypy.checker.Problem;
+import com.leinardi.pycharm.mypy.checker.ProblemTable;
+import com.leinardi.pycharm.mypy.mpapi.SeverityLevel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+
+public class MypyAnnotatorTest {
+
+    @Test
+    public void testFiltersSyntaxErrorsOfProblemTableView() {
+        PsiFile psiFile = proxy(PsiFile.class);
+        @SuppressWarnings("unchecked")
+        SmartPsiElementPointer<PsiFile> filePointer = proxy(SmartPsiElementPointer.class);
+        ProblemTable problemTable = new ProblemTable();
+        List<Problem> view = problemTable.add(psiFile, Arrays.asList(
+                new Problem(filePointer, 0, 1, "invalid syntax", SeverityLevel.ERROR, 1, 0, -1, -1, false, false),
+                new Problem(filePointer, 10, 1, "Name \"x\" is not defined", SeverityLevel.ERROR, 2, 4, 2, 5,
+                        false, false)));
+
+        List<Problem> problems = MypyAnnotator.withoutSyntaxErrors(view);
+
+        Assert.assertEquals(1, problems.size());
+        Assert.assertEquals("Name \"x\" is not defined", problems.get(0).getMessage());
+        Assert.assertEquals(2, view.size());
+        Assert.assertEquals("invalid syntax", view.get(0).getMessage());
+    }
+
+    private static <T> T proxy(final Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return type.getSimpleName();
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                }));
+    }
+}
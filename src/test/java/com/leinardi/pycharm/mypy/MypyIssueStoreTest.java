@@ -0,0 +1,125 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.leinardi.pycharm.mypy;
+
+import com.intellij.openapi.project.Project;
+import com.leinardi.pycharm.mypy.mpapi.Issue;
+import com.leinardi.pycharm.mypy.mpapi.SeverityLevel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MypyIssueStoreTest {
+
+    @Test
+    public void testReadsBackWrittenIssues() throws IOException {
+        Path directory = Files.createTempDirectory("mypy");
+        File storeFile = directory.resolve("issues.bin").toFile();
+        try {
+            MypyResultCache.Key key = key("/project/module.py", 42);
+            MypyResultCache.Key cleanKey = key("/project/clean.py", 43);
+            List<Issue> issues = Arrays.asList(
+                    new Issue("/project/module.py", 1, 0, SeverityLevel.ERROR, "invalid syntax"),
+                    new Issue("/project/module.py", 2, 4, SeverityLevel.WARNING, "Name \"x\" is not defined",
+                            "name-defined", 2, 5));
+            Map<MypyResultCache.Key, List<Issue>> results = new LinkedHashMap<>();
+            results.put(key, issues);
+            results.put(cleanKey, Collections.emptyList());
+            MypyIssueStore writer = new MypyIssueStore(proxy(Project.class), storeFile);
+            writer.put(results);
+            Assert.assertTrue(writer.isVerified(key));
+
+            MypyIssueStore reader = new MypyIssueStore(proxy(Project.class), storeFile);
+            List<Issue> storedIssues = reader.get(key);
+
+            Assert.assertNotNull(storedIssues);
+            Assert.assertEquals(issues.size(), storedIssues.size());
+            for (int i = 0; i < issues.size(); i++) {
+                Issue expected = issues.get(i);
+                Issue actual = storedIssues.get(i);
+                Assert.assertEquals(expected.getLine(), actual.getLine());
+                Assert.assertEquals(expected.getColumn(), actual.getColumn());
+                Assert.assertEquals(expected.getEndLine(), actual.getEndLine());
+                Assert.assertEquals(expected.getEndColumn(), actual.getEndColumn());
+                Assert.assertEquals(expected.getSeverityLevel(), actual.getSeverityLevel());
+                Assert.assertEquals(expected.getMessage(), actual.getMessage());
+            }
+            Assert.assertEquals(Collections.emptyList(), reader.get(cleanKey));
+            Assert.assertFalse(reader.isVerified(key));
+            Assert.assertNull(reader.get(key("/project/module.py", 44)));
+            Assert.assertNull(reader.get(key("/project/other.py", 42)));
+        } finally {
+            Files.deleteIfExists(storeFile.toPath());
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testAppendsToExistingStore() throws IOException {
+        Path directory = Files.createTempDirectory("mypy");
+        File storeFile = directory.resolve("issues.bin").toFile();
+        try {
+            MypyIssueStore writer = new MypyIssueStore(proxy(Project.class), storeFile);
+            writer.put(Collections.singletonMap(key("/project/module.py", 1), Collections.singletonList(
+                    new Issue("/project/module.py", 1, 0, SeverityLevel.ERROR, "first"))));
+            writer.put(Collections.singletonMap(key("/project/module.py", 2), Collections.singletonList(
+                    new Issue("/project/module.py", 3, 0, SeverityLevel.ERROR, "second"))));
+
+            MypyIssueStore reader = new MypyIssueStore(proxy(Project.class), storeFile);
+
+            Assert.assertNull(reader.get(key("/project/module.py", 1)));
+            List<Issue> storedIssues = reader.get(key("/project/module.py", 2));
+            Assert.assertNotNull(storedIssues);
+            Assert.assertEquals("second", storedIssues.get(0).getMessage());
+            Assert.assertEquals(3, storedIssues.get(0).getLine());
+        } finally {
+            Files.deleteIfExists(storeFile.toPath());
+            Files.delete(directory);
+        }
+    }
+
+    private static MypyResultCache.Key key(final String path, final long contentHash) {
+        return new MypyResultCache.Key(path, contentHash, "config", "--strict", "/usr/bin/python3", "1.0.0");
+    }
+
+    private static <T> T proxy(final Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return type.getSimpleName();
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                }));
+    }
+}
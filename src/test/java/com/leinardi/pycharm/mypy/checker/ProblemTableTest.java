@@ -0,0 +1,126 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.leinardi.pycharm.mypy.checker;
+
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.leinardi.pycharm.mypy.mpapi.SeverityLevel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class ProblemTableTest {
+
+    @Test
+    public void testViewReadsBackAddedProblems() {
+        PsiFile psiFile = proxy(PsiFile.class);
+        @SuppressWarnings("unchecked")
+        SmartPsiElementPointer<PsiFile> filePointer = proxy(SmartPsiElementPointer.class);
+        ProblemTable problemTable = new ProblemTable();
+        List<Problem> problems = Arrays.asList(
+                new Problem(filePointer, 0, 7, "invalid syntax", SeverityLevel.ERROR, 1, 0, -1, -1, false, false),
+                new Problem(filePointer, 12, 7, "Name \"x\" is not defined", SeverityLevel.WARNING, 2, 4, 2, 5,
+                        true, true));
+
+        List<Problem> view = problemTable.add(psiFile, problems);
+
+        Assert.assertEquals(2, view.size());
+        for (int i = 0; i < problems.size(); i++) {
+            Problem expected = problems.get(i);
+            Problem actual = view.get(i);
+            Assert.assertSame(filePointer, actual.getFilePointer());
+            Assert.assertEquals(expected.getOffset(), actual.getOffset());
+            Assert.assertEquals(7, actual.getModificationStamp());
+            Assert.assertEquals(expected.getMessage(), actual.getMessage());
+            Assert.assertEquals(expected.severityLevel(), actual.severityLevel());
+            Assert.assertEquals(expected.line(), actual.line());
+            Assert.assertEquals(expected.column(), actual.column());
+            Assert.assertEquals(expected.endLine(), actual.endLine());
+            Assert.assertEquals(expected.endColumn(), actual.endColumn());
+            Assert.assertEquals(expected.isAfterEndOfLine(), actual.isAfterEndOfLine());
+            Assert.assertEquals(expected.isSuppressErrors(), actual.isSuppressErrors());
+        }
+    }
+
+    @Test
+    public void testViewStaysValidWhileTableGrows() {
+        @SuppressWarnings("unchecked")
+        SmartPsiElementPointer<PsiFile> filePointer = proxy(SmartPsiElementPointer.class);
+        ProblemTable problemTable = new ProblemTable();
+        List<Problem> view = problemTable.add(proxy(PsiFile.class), Collections.singletonList(
+                new Problem(filePointer, 0, 0, "first", SeverityLevel.ERROR, 1, 0, -1, -1, false, false)));
+        for (int i = 0; i < 1000; i++) {
+            problemTable.add(proxy(PsiFile.class), Collections.singletonList(
+                    new Problem(filePointer, i, 0, "other", SeverityLevel.ERROR, i + 1, 0, -1, -1, false, false)));
+        }
+
+        Assert.assertEquals(1, view.size());
+        Assert.assertEquals("first", view.get(0).getMessage());
+        Assert.assertEquals(1001, problemTable.size());
+    }
+
+    @Test
+    public void testSharesMessagesAcrossFiles() {
+        ProblemTable problemTable = new ProblemTable();
+        List<PsiFile> psiFiles = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            PsiFile psiFile = proxy(PsiFile.class);
+            @SuppressWarnings("unchecked")
+            SmartPsiElementPointer<PsiFile> filePointer = proxy(SmartPsiElementPointer.class);
+            psiFiles.add(psiFile);
+            problemTable.add(psiFile, Arrays.asList(
+                    new Problem(filePointer, 0, 0, "Missing return statement", SeverityLevel.ERROR, 1, 0, -1, -1,
+                            false, false),
+                    new Problem(filePointer, 4, 0, "Name \"x\" is not defined", SeverityLevel.ERROR, 2, 0, -1, -1,
+                            false, false)));
+        }
+        problemTable.add(proxy(PsiFile.class), Collections.emptyList());
+        problemTable.trimToSize();
+
+        Map<PsiFile, List<Problem>> fileProblems = problemTable.asMap();
+
+        Assert.assertEquals(200, problemTable.size());
+        Assert.assertEquals(2, problemTable.getMessageCount());
+        Assert.assertEquals(101, fileProblems.size());
+        Assert.assertEquals(psiFiles, new ArrayList<>(fileProblems.keySet()).subList(0, 100));
+        Assert.assertEquals("Name \"x\" is not defined", fileProblems.get(psiFiles.get(99)).get(1).getMessage());
+        Assert.assertTrue(problemTable.estimateSizeInBytes() < problemTable.estimateObjectSizeInBytes());
+    }
+
+    private static <T> T proxy(final Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return type.getSimpleName();
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                }));
+    }
+}
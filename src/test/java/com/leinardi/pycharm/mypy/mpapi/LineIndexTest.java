@@ -0,0 +1,71 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.mpapi;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LineIndexTest {
+    private static final int TAB_WIDTH = 4;
+
+    @Test
+    public void testLineSeparators() {
+        String text = "a = 1\nb = 2\r\nc = 3\rd = 4";
+        LineIndex lineIndex = LineIndex.of(text, 0);
+
+        Assert.assertEquals(4, lineIndex.getLineCount());
+        Assert.assertEquals(0, lineIndex.getLineStart(1));
+        Assert.assertEquals(6, lineIndex.getLineStart(2));
+        Assert.assertEquals(13, lineIndex.getLineStart(3));
+        Assert.assertEquals(19, lineIndex.getLineStart(4));
+        Assert.assertEquals(text.length(), lineIndex.getLineStart(5));
+    }
+
+    @Test
+    public void testOffsets() {
+        String text = "a = 1\nb = 2\n";
+        LineIndex lineIndex = LineIndex.of(text, 0);
+
+        Assert.assertEquals(4, lineIndex.getOffset(text, 1, 4, TAB_WIDTH));
+        Assert.assertEquals(10, lineIndex.getOffset(text, 2, 4, TAB_WIDTH));
+        // past the end of the line
+        Assert.assertEquals(11, lineIndex.getOffset(text, 2, 42, TAB_WIDTH));
+        // past the end of the file
+        Assert.assertEquals(text.length(), lineIndex.getOffset(text, 42, 0, TAB_WIDTH));
+        // offset in the file
+        Assert.assertEquals(7, lineIndex.getOffset(text, 0, 7, TAB_WIDTH));
+    }
+
+    @Test
+    public void testTabsAreCountedAsTabWidthColumns() {
+        String text = "def f():\n\treturn x\n";
+        LineIndex lineIndex = LineIndex.of(text, 0);
+
+        Assert.assertEquals(10, lineIndex.getOffset(text, 2, 4, TAB_WIDTH));
+        Assert.assertEquals(17, lineIndex.getOffset(text, 2, 11, TAB_WIDTH));
+    }
+
+    @Test
+    public void testDocumentLineStarts() {
+        String text = "x = 1\n\tpass\n";
+        LineIndex lineIndex = LineIndex.of(text, new int[]{0, 6, 12}, 42);
+
+        Assert.assertEquals(42, lineIndex.getModificationStamp());
+        Assert.assertEquals(3, lineIndex.getLineCount());
+        Assert.assertEquals(7, lineIndex.getOffset(text, 2, 4, TAB_WIDTH));
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.mpapi;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class ModulePartitionerTest {
+    private static final Set<String> PACKAGES = new HashSet<>(Arrays.asList(
+            "/project/app/pkg", "/project/app/pkg/sub", "/project/lib/pkg", "/project/tools"));
+
+    private final ModulePartitioner partitioner = new ModulePartitioner(PACKAGES::contains);
+
+    @Test
+    public void testModuleNames() {
+        Assert.assertEquals("pkg", partitioner.getModuleName("/project/app/pkg/__init__.py"));
+        Assert.assertEquals("pkg.sub.__main__", partitioner.getModuleName("/project/app/pkg/sub/__main__.py"));
+        Assert.assertEquals("setup", partitioner.getModuleName("/project/app/setup.py"));
+        Assert.assertEquals("tools.cli", partitioner.getModuleName("/project/tools/cli.py"));
+    }
+
+    @Test
+    public void testPartitionSeparatesDuplicateModules() {
+        List<Set<String>> groups = partitioner.partition(Arrays.asList(
+                "/project/app/main.py",
+                "/project/app/pkg/__init__.py",
+                "/project/app/pkg/sub/__init__.py",
+                "/project/app/setup.py",
+                "/project/lib/pkg/__init__.py",
+                "/project/lib/setup.py",
+                "/project/tools/__init__.py"));
+
+        Assert.assertEquals(2, groups.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(
+                "/project/app/main.py",
+                "/project/app/pkg/__init__.py",
+                "/project/app/pkg/sub/__init__.py",
+                "/project/app/setup.py",
+                "/project/tools/__init__.py")), groups.get(0));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(
+                "/project/lib/pkg/__init__.py",
+                "/project/lib/setup.py")), groups.get(1));
+    }
+}
@@ -39,4 +39,60 @@ public class MypyRunnerTest {
         List<Issue> results = MypyRunner.parseMypyOutput(stringToStream(input));
         Assert.assertArrayEquals(results.toArray(), new Issue[]{parsed});
     }
+
+    @Test
+    public void testParseWithErrorEnd() throws IOException {
+        String input = "path/testfile.py:2:5:2:9: error: Name \"foo\" is not defined  [name-defined]\n";
+
+        List<Issue> results = MypyRunner.parseMypyOutput(stringToStream(input));
+        Assert.assertEquals(1, results.size());
+        Issue issue = results.get(0);
+        Assert.assertEquals(new Issue("path/testfile.py", 2, 4, SeverityLevel.ERROR,
+                "Name \"foo\" is not defined  [name-defined]"), issue);
+        Assert.assertEquals("name-defined", issue.getCode());
+        Assert.assertEquals(2, issue.getEndLine());
+        Assert.assertEquals(9, issue.getEndColumn());
+    }
+
+    @Test
+    public void testParseWindowsPath() throws IOException {
+        String input = "Found 1 error in 1 file\r\nC:\\project\\testfile.py:3:1: note: Revealed type is \"int\"\r\n";
+
+        List<Issue> results = MypyRunner.parseMypyOutput(stringToStream(input));
+        Assert.assertArrayEquals(new Issue[]{
+                new Issue("C:\\project\\testfile.py", 3, 0, SeverityLevel.NOTE, "Revealed type is \"int\"")
+        }, results.toArray());
+    }
+
+    @Test
+    public void testParseJson() throws IOException {
+        String input = "{\"file\": \"path/testfile.py\", \"line\": 1, \"column\": 21, "
+                + "\"message\": \"Incompatible type \\\"int\\\"\", \"hint\": \"See docs\", "
+                + "\"code\": \"dict-item\", \"severity\": \"error\"}\n"
+                + "Found 1 error in 1 file (checked 1 source file)\n";
+
+        List<Issue> results = MypyRunner.parseMypyOutput(stringToStream(input), true);
+        Assert.assertArrayEquals(new Issue[]{
+                new Issue("path/testfile.py", 1, 21, SeverityLevel.ERROR, "Incompatible type \"int\"  [dict-item]"),
+                new Issue("path/testfile.py", 1, 21, SeverityLevel.NOTE, "See docs")
+        }, results.toArray());
+        Assert.assertEquals("dict-item", results.get(0).getCode());
+    }
+
+    @Test
+    public void testIsMypyVersionAtLeast() {
+        Assert.assertTrue(MypyRunner.isMypyVersionAtLeast("mypy 1.11.2 (compiled: yes)", 1, 11));
+        Assert.assertTrue(MypyRunner.isMypyVersionAtLeast("mypy 0.981", 0, 981));
+        Assert.assertFalse(MypyRunner.isMypyVersionAtLeast("mypy 0.910", 0, 981));
+        Assert.assertFalse(MypyRunner.isMypyVersionAtLeast("", 1, 11));
+    }
+
+    @Test
+    public void testIsJsonOutputRequested() {
+        Assert.assertTrue(MypyRunner.isJsonOutputRequested("--strict --output json"));
+        Assert.assertTrue(MypyRunner.isJsonOutputRequested("--output=json"));
+        Assert.assertTrue(MypyRunner.isJsonOutputRequested(" -O json "));
+        Assert.assertFalse(MypyRunner.isJsonOutputRequested("--strict"));
+        Assert.assertFalse(MypyRunner.isJsonOutputRequested(""));
+    }
 }
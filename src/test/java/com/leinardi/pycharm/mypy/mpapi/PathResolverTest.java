@@ -0,0 +1,73 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.mpapi;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class PathResolverTest {
+    private static final String BASE_DIR = path("project");
+    private static final String MAIN = path("project", "main.py");
+    private static final String UTIL = path("project", "pkg", "util.py");
+    private static final String SHADOW = path("tmp", "shadow", "util.py");
+
+    private final PathResolver<String> resolver = new PathResolver<>(BASE_DIR, files(),
+            Collections.singletonMap(SHADOW, UTIL), false);
+
+    @Test
+    public void testResolvesAbsoluteAndRelativePaths() {
+        Assert.assertEquals("main", resolver.resolve(MAIN));
+        Assert.assertEquals("main", resolver.resolve("main.py"));
+        Assert.assertEquals("util", resolver.resolve("pkg" + File.separator + "util.py"));
+        Assert.assertEquals("util", resolver.resolve("." + File.separator + "pkg" + File.separator + "util.py"));
+        Assert.assertEquals("util", resolver.resolve(path("project", "pkg", "..", "pkg", "util.py")));
+        Assert.assertEquals(0, resolver.getUnmappedIssueCount());
+    }
+
+    @Test
+    public void testResolvesShadowFiles() {
+        Assert.assertEquals("util", resolver.resolve(SHADOW));
+    }
+
+    @Test
+    public void testCountsUnmappedPaths() {
+        Assert.assertNull(resolver.resolve("followed.py"));
+        Assert.assertNull(resolver.resolve("followed.py"));
+        Assert.assertEquals("main", resolver.resolve("main.py"));
+        Assert.assertNull(resolver.resolve("other.py"));
+
+        Assert.assertEquals(3, resolver.getUnmappedIssueCount());
+        Assert.assertEquals(Integer.valueOf(2), resolver.getUnmappedPaths().get("followed.py"));
+        Assert.assertEquals(Integer.valueOf(1), resolver.getUnmappedPaths().get("other.py"));
+    }
+
+    private static Map<String, String> files() {
+        Map<String, String> files = new HashMap<>();
+        files.put(MAIN, "main");
+        files.put(UTIL, "util");
+        return files;
+    }
+
+    private static String path(final String... names) {
+        return File.separator + String.join(File.separator, names);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.mpapi;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class ScanShardsTest {
+    private static final Set<String> PACKAGES = new HashSet<>(Arrays.asList(
+            "/project/src/pkg", "/project/src/pkg/a", "/project/src/pkg/b", "/project/src/pkg/b/c"));
+
+    private final ModulePartitioner partitioner = new ModulePartitioner(PACKAGES::contains);
+
+    @Test
+    public void testSplitsSingleTopLevelPackageOfSrcLayout() {
+        Set<String> files = new HashSet<>(Arrays.asList(
+                "/project/src/pkg/__init__.py",
+                "/project/src/pkg/a/__init__.py",
+                "/project/src/pkg/a/x.py",
+                "/project/src/pkg/a/y.py",
+                "/project/src/pkg/b/__init__.py",
+                "/project/src/pkg/b/z.py",
+                "/project/src/pkg/b/c/__init__.py",
+                "/project/src/pkg/b/c/w.py"));
+
+        List<Set<String>> shards = ScanShards.partition(files, partitioner::getModuleName, 2);
+
+        Assert.assertEquals(2, shards.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(
+                "/project/src/pkg/b/__init__.py",
+                "/project/src/pkg/b/z.py",
+                "/project/src/pkg/b/c/__init__.py",
+                "/project/src/pkg/b/c/w.py")), shards.get(0));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(
+                "/project/src/pkg/__init__.py",
+                "/project/src/pkg/a/__init__.py",
+                "/project/src/pkg/a/x.py",
+                "/project/src/pkg/a/y.py")), shards.get(1));
+    }
+
+    @Test
+    public void testKeepsSubPackagesTogetherWhenEnoughShards() {
+        Set<String> files = new HashSet<>(Arrays.asList(
+                "/project/src/pkg/a/x.py",
+                "/project/src/pkg/a/y.py",
+                "/project/src/pkg/b/z.py",
+                "/project/src/pkg/b/c/w.py"));
+
+        List<Set<String>> shards = ScanShards.partition(files, partitioner::getModuleName, 2);
+
+        Assert.assertEquals(2, shards.size());
+        Assert.assertTrue(shards.contains(new HashSet<>(Arrays.asList(
+                "/project/src/pkg/a/x.py", "/project/src/pkg/a/y.py"))));
+        Assert.assertTrue(shards.contains(new HashSet<>(Arrays.asList(
+                "/project/src/pkg/b/z.py", "/project/src/pkg/b/c/w.py"))));
+    }
+
+    @Test
+    public void testSingleShardWhenNothingToSplit() {
+        Set<String> files = new HashSet<>(Arrays.asList("/project/src/pkg/a/x.py"));
+
+        Assert.assertEquals(1, ScanShards.partition(files, partitioner::getModuleName, 4).size());
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.mpapi;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+public class StreamTailTest {
+
+    @Test
+    public void testKeepsShortStreams() {
+        StreamTail tail = read("warning: a\nwarning: b\n", 64);
+        Assert.assertEquals("warning: a\nwarning: b\n", tail.getText());
+    }
+
+    @Test
+    public void testKeepsStreamsFillingTheBuffer() {
+        StreamTail tail = read("0123456789", 10);
+        Assert.assertEquals("0123456789", tail.getText());
+    }
+
+    @Test
+    public void testKeepsTheLastCompleteLines() {
+        StringBuilder output = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            output.append("line ").append(i).append('\n');
+        }
+        StreamTail tail = read(output.toString(), 32);
+        Assert.assertEquals(output.length(), tail.getTotalBytes());
+        Assert.assertEquals("...\nline 997\nline 998\nline 999\n", tail.getText());
+    }
+
+    private static StreamTail read(final String content, final int capacity) {
+        StreamTail tail = new StreamTail(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), capacity);
+        tail.run();
+        return tail;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2021 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.mypy.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_16LE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class ContentWriterTest {
+    @Test
+    public void testEncodeTranslatesLineSeparators() throws IOException {
+        Assert.assertEquals("a = 1\r\nb = '\u00e8'\r\n\r\n",
+                UTF_8.decode(ContentWriter.encode("a = 1\nb = '\u00e8'\n\n", "\r\n", UTF_8)).toString());
+        Assert.assertEquals("a = 1\nb = 2",
+                UTF_16LE.decode(ContentWriter.encode("a = 1\nb = 2", "\n", UTF_16LE)).toString());
+    }
+
+    @Test
+    public void testEncodeGrowsBuffer() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            content.append("x: str = '\u20ac'\n");
+        }
+        ByteBuffer encoded = ContentWriter.encode(content, "\r\n", UTF_8);
+        Assert.assertEquals(content.toString().replace("\n", "\r\n"), UTF_8.decode(encoded).toString());
+    }
+
+    @Test
+    public void testWriteIfChangedSkipsSameContents() throws IOException {
+        Path directory = Files.createTempDirectory("mypy");
+        Path file = directory.resolve("module.py");
+        try {
+            Assert.assertTrue(ContentWriter.writeIfChanged(file, ContentWriter.encode("a = 1\n", "\n", UTF_8)));
+            Assert.assertFalse(ContentWriter.writeIfChanged(file, ContentWriter.encode("a = 1\n", "\n", UTF_8)));
+            Assert.assertTrue(ContentWriter.writeIfChanged(file, ContentWriter.encode("a = 2\n", "\n", UTF_8)));
+            Assert.assertEquals("a = 2\n", new String(Files.readAllBytes(file), UTF_8));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(directory);
+        }
+    }
+}